@@ -0,0 +1,67 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import br.com.azalim.mcserverping.examples.FakeStatusServer;
+
+/**
+ * Full ping round trips against an in-process {@link FakeStatusServer}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoundTripBenchmark {
+
+    @Param({ "COMPONENT_MOTD", "LARGE_FAVICON" })
+    public StatusPayloads payload;
+
+    private FakeStatusServer server;
+    private MCPingClient client;
+    private MCPingOptions options;
+
+    @Setup
+    public void setup() throws IOException {
+        this.server = FakeStatusServer.builder().json(this.payload.json()).build().start();
+        this.client = new MCPingClient();
+        this.options = MCPingOptions.builder()
+                .hostname("127.0.0.1")
+                .port(this.server.getPort())
+                .resolver(InetSocketAddress::createUnresolved)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.client.close();
+        this.server.close();
+    }
+
+    @Benchmark
+    public MCPingResponse getPing() throws IOException {
+        return MCPing.getPing(this.options);
+    }
+
+    @Benchmark
+    public MCPingResponse clientPing() {
+        return this.client.ping(this.options).join();
+    }
+
+}
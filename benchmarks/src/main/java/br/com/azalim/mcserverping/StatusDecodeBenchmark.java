@@ -0,0 +1,61 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding of status response payloads into {@link MCPingResponse}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StatusDecodeBenchmark {
+
+    private static final Set<MCPingField> ALL_FIELDS = EnumSet.allOf(MCPingField.class);
+    private static final Set<MCPingField> COUNTS_ONLY = EnumSet.of(MCPingField.PLAYERS, MCPingField.VERSION);
+
+    @Param
+    public StatusPayloads payload;
+
+    private byte[] data;
+
+    @Setup
+    public void setup() {
+        this.data = this.payload.json().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public MCPingResponse decode() throws IOException {
+        return MCPing.decodeResponse(this.data, 0, this.data.length, StandardCharsets.UTF_8, ALL_FIELDS);
+    }
+
+    @Benchmark
+    public String decodeWithFavicon() throws IOException {
+        return MCPing.decodeResponse(this.data, 0, this.data.length, StandardCharsets.UTF_8, ALL_FIELDS)
+                .getFavicon();
+    }
+
+    @Benchmark
+    public MCPingResponse decodeCountsOnly() throws IOException {
+        return MCPing.decodeResponse(this.data, 0, this.data.length, StandardCharsets.UTF_8, COUNTS_ONLY);
+    }
+
+}
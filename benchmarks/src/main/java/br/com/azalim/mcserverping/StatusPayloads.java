@@ -0,0 +1,97 @@
+package br.com.azalim.mcserverping;
+
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Realistic status response payloads used by the benchmarks.
+ */
+public enum StatusPayloads {
+
+    /**
+     * Legacy string MOTD with color codes
+     */
+    PLAIN_MOTD {
+        @Override
+        String description() {
+            return "\"\u00A76\u00A7lMy Server \u00A7r\u00A77- \u00A7aSurvival \u00A77| \u00A7bSkyblock\"";
+        }
+    },
+
+    /**
+     * Text component MOTD with styled {@code extra} components
+     */
+    COMPONENT_MOTD {
+        @Override
+        String description() {
+            return "{\"text\":\"\",\"extra\":["
+                    + "{\"text\":\"My Server \",\"color\":\"gold\",\"bold\":true},"
+                    + "{\"text\":\"- \",\"color\":\"gray\"},"
+                    + "{\"text\":\"Survival\",\"color\":\"green\"},"
+                    + "{\"text\":\" | \",\"color\":\"gray\"},"
+                    + "{\"text\":\"Skyblock\",\"color\":\"#55FFFF\",\"italic\":true}]}";
+        }
+    },
+
+    /**
+     * Component MOTD with a 64x64 favicon of about 16 KB
+     */
+    LARGE_FAVICON {
+        @Override
+        String description() {
+            return COMPONENT_MOTD.description();
+        }
+
+        @Override
+        String favicon() {
+            byte[] image = new byte[12 * 1024];
+            new Random(0).nextBytes(image);
+            return ",\"favicon\":\"data:image/png;base64," + Base64.getEncoder().encodeToString(image) + "\"";
+        }
+    },
+
+    /**
+     * Component MOTD with a sample of 12 players
+     */
+    PLAYER_SAMPLE {
+        @Override
+        String description() {
+            return COMPONENT_MOTD.description();
+        }
+
+        @Override
+        String sample() {
+            StringBuilder sample = new StringBuilder(",\"sample\":[");
+
+            for (int i = 0; i < 12; i++) {
+                sample.append(i == 0 ? "" : ",")
+                        .append("{\"name\":\"Player").append(i)
+                        .append("\",\"id\":\"4566e69f-c907-48ee-8d71-d7ba5aa00d").append(10 + i).append("\"}");
+            }
+
+            return sample.append(']').toString();
+        }
+    };
+
+    abstract String description();
+
+    String sample() {
+        return "";
+    }
+
+    String favicon() {
+        return "";
+    }
+
+    /**
+     * @return the status response JSON
+     */
+    public String json() {
+        return "{\"version\":{\"name\":\"Paper 1.20.4\",\"protocol\":765},"
+                + "\"players\":{\"max\":500,\"online\":123" + this.sample() + "},"
+                + "\"description\":" + this.description()
+                + this.favicon()
+                + ",\"enforcesSecureChat\":true}";
+    }
+
+}
@@ -0,0 +1,40 @@
+package br.com.azalim.mcserverping;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link MCPingUtil#stripColors(String)} on typical MOTDs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StripColorsBenchmark {
+
+    @Param({
+            "A Minecraft Server",
+            "\u00A76\u00A7lMy Server \u00A7r\u00A77- \u00A7aSurvival \u00A77| \u00A7bSkyblock",
+            "\u00A7x\u00A7f\u00A7f\u00A7a\u00A7a\u00A70\u00A70Hex "
+                    + "\u00A7x\u00A70\u00A70\u00A7a\u00A7a\u00A7f\u00A7fcolors"
+    })
+    public String motd;
+
+    @Benchmark
+    public String stripColors() {
+        return MCPingUtil.stripColors(this.motd);
+    }
+
+}
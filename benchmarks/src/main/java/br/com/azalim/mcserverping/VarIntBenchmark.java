@@ -0,0 +1,80 @@
+package br.com.azalim.mcserverping;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Stream and buffer VarInt codecs of {@link MCPingUtil}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VarIntBenchmark {
+
+    @Param({ "1", "300", "2097151", "-1" })
+    public int value;
+
+    private byte[] encoded;
+    private ByteBuffer buffer;
+    private ByteArrayOutputStream bytes;
+    private DataOutputStream out;
+
+    @Setup
+    public void setup() {
+        this.buffer = ByteBuffer.allocate(5);
+        MCPingUtil.writeVarInt(this.buffer, this.value);
+        this.encoded = new byte[this.buffer.position()];
+        this.buffer.flip();
+        this.buffer.get(this.encoded);
+
+        this.bytes = new ByteArrayOutputStream(5);
+        this.out = new DataOutputStream(this.bytes);
+    }
+
+    @Benchmark
+    public int readStream() throws IOException {
+        return MCPingUtil.readVarInt(new DataInputStream(new ByteArrayInputStream(this.encoded)));
+    }
+
+    @Benchmark
+    public int readBuffer() throws IOException {
+        this.buffer.clear();
+        this.buffer.put(this.encoded).flip();
+        return MCPingUtil.readVarInt(this.buffer);
+    }
+
+    @Benchmark
+    public int writeStream() throws IOException {
+        this.bytes.reset();
+        MCPingUtil.writeVarInt(this.out, this.value);
+        return this.bytes.size();
+    }
+
+    @Benchmark
+    public int writeBuffer() {
+        this.buffer.clear();
+        MCPingUtil.writeVarInt(this.buffer, this.value);
+        return this.buffer.position();
+    }
+
+}
@@ -28,32 +28,36 @@
  */
 package br.com.azalim.mcserverping;
 
-import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
 import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
-
-import org.xbill.DNS.Lookup;
-import org.xbill.DNS.Record;
-import org.xbill.DNS.SRVRecord;
-import org.xbill.DNS.TextParseException;
-import org.xbill.DNS.Type;
-
-import com.google.common.base.Preconditions;
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
-
-import net.md_5.bungee.api.chat.TextComponent;
-import net.md_5.bungee.chat.ComponentSerializer;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.Strictness;
+import com.google.gson.stream.JsonReader;
 
 public class MCPing {
 
-    private static final Gson GSON = new Gson();
-    private static final String SRV_QUERY_PREFIX = "_minecraft._tcp.%s";
+    /**
+     * Number of pings {@link #pingAll(Collection)} runs at once.
+     */
+    public static final int DEFAULT_CONCURRENCY = 256;
 
     /**
      * Fetches a {@link MCPingResponse} for the supplied hostname.
@@ -76,124 +80,265 @@ public class MCPing {
      */
     public static MCPingResponse getPing(final MCPingOptions options) throws IOException {
 
-        Preconditions.checkNotNull(options.getHostname(), "Hostname cannot be null.");
+        Objects.requireNonNull(options.getHostname(), "Hostname cannot be null.");
 
-        String hostname = options.getHostname();
-        int port = options.getPort();
+        MCPingListener listener = options.getListener();
+        listener.onStart(options);
 
         try {
+            MCPingResponse response = ping(options, listener);
+            listener.onPong(options, response);
+            return response;
+        } catch (IOException e) {
+            listener.onFailure(options, MCPingFailure.of(e), e);
+            throw e;
+        }
+    }
 
-            Record[] records = new Lookup(String.format(SRV_QUERY_PREFIX, hostname), Type.SRV).run();
+    /**
+     * Pings every supplied target with {@link #getPing(MCPingOptions)}, at most
+     * {@link #DEFAULT_CONCURRENCY} at once, without waiting for them. On Java 21 and newer each
+     * ping runs on its own virtual thread.
+     *
+     * @param options - filled instances of {@link MCPingOptions}
+     * @return one future per target, in iteration order
+     */
+    public static List<CompletableFuture<MCPingResponse>> pingAll(final Collection<MCPingOptions> options) {
+        return pingAll(options, DEFAULT_CONCURRENCY);
+    }
 
-            if (records != null) {
+    /**
+     * Pings every supplied target with {@link #getPing(MCPingOptions)}, without waiting for them.
+     * On Java 21 and newer each ping runs on its own virtual thread.
+     *
+     * @param options - filled instances of {@link MCPingOptions}
+     * @param maxConcurrency - maximum number of pings running at once
+     * @return one future per target, in iteration order
+     */
+    public static List<CompletableFuture<MCPingResponse>> pingAll(final Collection<MCPingOptions> options,
+            final int maxConcurrency) {
 
-                for (Record record : records) {
-                    SRVRecord srv = (SRVRecord) record;
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive.");
+        }
 
-                    hostname = srv.getTarget().toString().replaceFirst("\\.$", "");
-                    port = srv.getPort();
+        List<CompletableFuture<MCPingResponse>> futures = new ArrayList<>(options.size());
+        List<Runnable> tasks = new ArrayList<>(options.size());
+
+        for (MCPingOptions option : options) {
+            CompletableFuture<MCPingResponse> future = new CompletableFuture<>();
+            futures.add(future);
+            tasks.add(() -> {
+                try {
+                    future.complete(getPing(option));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
                 }
+            });
+        }
 
-            }
-        } catch (TextParseException e) {
-            e.printStackTrace();
+        MCPingExecutor.executeAll(tasks, maxConcurrency);
+        return futures;
+    }
+
+    /**
+     * Starts sampling the round trip time of the server on a long-lived connection, see
+     * {@link MCPingMonitor}.
+     *
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @param interval - time between pings
+     * @param unit - unit of the interval
+     * @param listener - receives the samples
+     * @return the running {@link MCPingMonitor}, to be closed when no longer needed
+     */
+    public static MCPingMonitor monitor(final MCPingOptions options, final long interval, final TimeUnit unit,
+            final MCPingSampleListener listener) {
+
+        Objects.requireNonNull(options.getHostname(), "Hostname cannot be null.");
+
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive.");
         }
 
-        String json;
-        long ping = -1;
+        MCPingMonitor monitor = new MCPingMonitor(options, interval, unit, listener);
+        monitor.start();
+        return monitor;
+    }
 
-        try (final Socket socket = new Socket()) {
+    private static MCPingResponse ping(final MCPingOptions options, final MCPingListener listener)
+            throws IOException {
 
-            socket.setSoTimeout(options.getReadTimeout());
-            long start = System.currentTimeMillis();
-            socket.connect(new InetSocketAddress(hostname, port), options.getTimeout());
-            ping = System.currentTimeMillis() - start;
+        MCPingTimings timings = new MCPingTimings();
+        long start = System.nanoTime();
 
-            try (DataInputStream in = new DataInputStream(socket.getInputStream());
-                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
-                    // > Handshake
-                    ByteArrayOutputStream handshake_bytes = new ByteArrayOutputStream();
-                    DataOutputStream handshake = new DataOutputStream(handshake_bytes)) {
+        List<InetSocketAddress> addresses = MCPingConnector.resolve(options);
+        timings.setResolve(System.nanoTime() - start);
+        listener.onResolved(options, addresses.get(0), timings.getResolve());
 
-                handshake.writeByte(MCPingUtil.PACKET_HANDSHAKE);
-                MCPingUtil.writeVarInt(handshake, options.getProtocolVersion());
-                MCPingUtil.writeVarInt(handshake, options.getHostname().length());
-                handshake.writeBytes(options.getHostname());
-                handshake.writeShort(options.getPort());
-                MCPingUtil.writeVarInt(handshake, MCPingUtil.STATUS_HANDSHAKE);
+        MCPingTimeoutEstimator estimator = options.getTimeoutEstimator();
+        MCPingTarget target = estimator == null ? null : MCPingTarget.of(options);
 
-                MCPingUtil.writeVarInt(out, handshake_bytes.size());
-                out.write(handshake_bytes.toByteArray());
+        int timeout = estimator == null ? options.getTimeout()
+                : estimator.getConnectTimeout(target, options.getTimeout());
+        int readTimeout = estimator == null ? options.getReadTimeout()
+                : estimator.getReadTimeout(target, options.getReadTimeout());
 
-                // > Status request
-                out.writeByte(0x01); // Size of packet
-                out.writeByte(MCPingUtil.PACKET_STATUSREQUEST);
+        MCPingResponse output;
+        InetSocketAddress address;
 
-                // < Status response
-                MCPingUtil.readVarInt(in); // Size
-                int id = MCPingUtil.readVarInt(in);
+        start = System.nanoTime();
 
-                MCPingUtil.io(id == -1, "Server prematurely ended stream.");
-                MCPingUtil.io(id != MCPingUtil.PACKET_STATUSREQUEST, "Server returned invalid packet.");
+        try (final SocketChannel channel = MCPingConnector.connect(addresses, timeout,
+                options.getConnectAttemptDelay())) {
 
-                int length = MCPingUtil.readVarInt(in);
-                MCPingUtil.io(length == -1, "Server prematurely ended stream.");
-                MCPingUtil.io(length == 0, "Server returned unexpected value.");
+            Socket socket = channel.socket();
+            socket.setSoTimeout(readTimeout);
+            address = (InetSocketAddress) channel.getRemoteAddress();
+            timings.setConnect(System.nanoTime() - start);
+            listener.onConnected(options, timings.getConnect());
 
-                byte[] data = new byte[length];
-                in.readFully(data);
-                json = new String(data, options.getCharset());
+            try (DataInputStream in = new DataInputStream(socket.getInputStream());
+                    OutputStream out = socket.getOutputStream()) {
+
+                // > Handshake & status request
+                start = System.nanoTime();
+                out.write(MCPingCodec.getRequest(options));
+
+                // < Status response
+                MCPingBuffers buffers = MCPingBuffers.acquire();
+
+                try {
+                    ByteBuffer data = readStatus(in, options.getMaxResponseBytes(), buffers);
+                    timings.setStatus(System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    output = decodeResponse(data.array(), 0, data.limit(), MCPingCodec.getCharset(options),
+                            options.getFields());
+                    timings.setDecode(System.nanoTime() - start);
+                } finally {
+                    buffers.release();
+                }
+                listener.onStatus(options, timings.getStatus());
 
                 // > Ping
-                out.writeByte(0x09); // Size of packet
-                out.writeByte(MCPingUtil.PACKET_PING);
-                out.writeLong(System.currentTimeMillis());
+                ByteBuffer ping_packet = ByteBuffer.allocate(MCPingCodec.PING_SIZE);
+                start = System.nanoTime();
+                MCPingCodec.writePing(ping_packet, start);
+                out.write(ping_packet.array());
 
                 // < Ping
-                MCPingUtil.readVarInt(in); // Size
-                id = MCPingUtil.readVarInt(in);
-                MCPingUtil.io(id == -1, "Server prematurely ended stream.");
-                MCPingUtil.io(id != MCPingUtil.PACKET_PING, "Server returned invalid packet.");
+                readPong(in);
+                timings.setPong(System.nanoTime() - start);
 
             }
 
+        } catch (SocketTimeoutException e) {
+            if (estimator != null) {
+                estimator.timedOut(target);
+            }
+            throw e;
         }
 
-        JsonObject jsonObject = JsonParser.parseString(json).getAsJsonObject();
-        JsonElement descriptionJsonElement = jsonObject.get("description");
+        if (estimator != null) {
+            estimator.record(target, timings);
+        }
 
-        if (descriptionJsonElement.isJsonObject()) {
+        output.setPing(TimeUnit.NANOSECONDS.toMillis(timings.getConnect()));
+        output.setTimings(timings);
+        output.setHostname(address.getHostString());
+        output.setPort(address.getPort());
 
-            // For those versions that work with TextComponent MOTDs
+        return output;
+    }
 
-            JsonObject descriptionJsonObject = jsonObject.get("description").getAsJsonObject();
+    /**
+     * Reads a status response packet.
+     *
+     * @param in - stream positioned at the start of the packet
+     * @param maxResponseBytes - largest packet accepted, see {@link MCPingOptions#getMaxResponseBytes()}
+     * @param buffers - buffers to read the payload into
+     * @return the JSON payload of the status response, only valid until the buffers are released
+     * @throws IOException if the packet is not a status response or is too large
+     */
+    static ByteBuffer readStatus(final DataInputStream in, final int maxResponseBytes, final MCPingBuffers buffers)
+            throws IOException {
 
-            if (descriptionJsonObject.has("extra")) {
-                descriptionJsonObject
-                        .addProperty("text",
-                                new TextComponent(ComponentSerializer
-                                        .parse(descriptionJsonObject.get("extra").getAsJsonArray().toString()))
-                                        .toLegacyText());
-                jsonObject.add("description", descriptionJsonObject);
-            }
+        int size = MCPingUtil.readVarInt(in);
+        MCPingUtil.io(size < 0 || size > maxResponseBytes, "Server returned a packet larger than maxResponseBytes.");
 
-        } else {
+        int id = MCPingUtil.readVarInt(in);
+        MCPingUtil.io(id != MCPingUtil.PACKET_STATUSREQUEST, "Server returned invalid packet.");
 
-            // For those versions that work with String MOTDs
+        int length = MCPingUtil.readVarInt(in);
+        MCPingUtil.io(length == 0, "Server returned unexpected value.");
+        MCPingUtil.io(length < 0 || length > size, "Server returned invalid packet.");
 
-            String description = descriptionJsonElement.getAsString();
-            JsonObject descriptionJsonObject = new JsonObject();
-            descriptionJsonObject.addProperty("text", description);
-            jsonObject.add("description", descriptionJsonObject);
+        byte[] data = buffers.bytes(length);
+        in.readFully(data, 0, length);
+        return ByteBuffer.wrap(data, 0, length);
+    }
 
-        }
+    /**
+     * Reads a pong packet.
+     *
+     * @param in - stream positioned at the start of the packet
+     * @return the payload the server echoed back
+     * @throws IOException if the packet is not a pong
+     */
+    static long readPong(final DataInputStream in) throws IOException {
 
-        MCPingResponse output = GSON.fromJson(jsonObject, MCPingResponse.class);
-        output.setPing(ping);
-        output.setHostname(hostname);
-        output.setPort(port);
+        MCPingUtil.readVarInt(in); // Size
+        int id = MCPingUtil.readVarInt(in);
+        MCPingUtil.io(id != MCPingUtil.PACKET_PING, "Server returned invalid packet.");
+        return in.readLong(); // Payload
+    }
 
-        return output;
+    /**
+     * Decodes the JSON payload of a status response into a {@link MCPingResponse}.
+     *
+     * @param data - buffer holding the status response payload
+     * @param offset - offset of the payload in the buffer
+     * @param length - length of the payload
+     * @param charset - charset the payload is encoded with
+     * @param fields - fields to decode, see {@link MCPingOptions#getFields()}
+     * @return {@link MCPingResponse} without ping, hostname and port
+     * @throws IOException if the payload is not a valid status response
+     */
+    static MCPingResponse decodeResponse(final byte[] data, final int offset, final int length,
+            final Charset charset, final Set<MCPingField> fields) throws IOException {
+
+        boolean deferFavicon = fields.contains(MCPingField.FAVICON) && MCPingFavicon.isScannable(charset);
+        MCPingResponseAdapter adapter = MCPingResponseAdapter.of(fields, deferFavicon);
+
+        MCPingBuffers buffers = MCPingBuffers.acquire();
+        CharBuffer chars = buffers.decode(data, offset, length, charset);
+
+        try (JsonReader reader = new JsonReader(new CharArrayReader(chars.array(), 0, chars.limit()))) {
+
+            reader.setStrictness(Strictness.LENIENT);
+            MCPingResponse response = adapter.read(reader);
+            if (response == null) {
+                throw new MCPingException(MCPingFailure.DECODE, "Server returned unexpected value.");
+            }
+
+            if (deferFavicon) {
+                long favicon = MCPingFavicon.locate(data, offset, length);
+
+                if (favicon != -1) {
+                    response.setFaviconData(Arrays.copyOfRange(data, (int) (favicon >>> 32), (int) favicon), charset);
+                }
+            }
+
+            return response;
+
+        } catch (MCPingException e) {
+            throw e;
+        } catch (IOException | IllegalStateException | NumberFormatException | JsonParseException e) {
+            // The payload is already in memory, so reader errors are syntax errors
+            throw new MCPingException(MCPingFailure.DECODE, "Server returned malformed status.", e);
+        } finally {
+            buffers.release();
+        }
     }
 
 }
@@ -0,0 +1,142 @@
+package br.com.azalim.mcserverping;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffers the status response is read into and decoded from, so a long-running poller does not
+ * allocate a new payload buffer and charset decoder for every ping.
+ * <p>
+ * Instances are taken from a bounded pool shared by every thread with {@link #acquire()} and given
+ * back with {@link #release()}, so pings that each run on a new thread still reuse them. Buffers up
+ * to {@link #RETAINED_SIZE} are kept with their instance; larger payloads get a buffer of their
+ * own, so one unusually large response does not pin memory in the pool. Buffers returned by an
+ * instance are only valid until it is released.
+ */
+final class MCPingBuffers {
+
+    /**
+     * Largest buffer kept for reuse, in bytes for payloads and in chars once decoded.
+     */
+    static final int RETAINED_SIZE = 64 * 1024;
+
+    /**
+     * Largest number of idle instances kept in the pool.
+     */
+    private static final int MAX_POOLED = 64;
+
+    private static final int INITIAL_SIZE = 8 * 1024;
+
+    private static final Queue<MCPingBuffers> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    private char[] chars = new char[INITIAL_SIZE];
+    private CharsetDecoder decoder;
+
+    private MCPingBuffers() {
+    }
+
+    /**
+     * @return an idle instance from the pool, or a new one if the pool is empty
+     */
+    static MCPingBuffers acquire() {
+        MCPingBuffers buffers = POOL.poll();
+
+        if (buffers == null) {
+            return new MCPingBuffers();
+        }
+
+        POOLED.decrementAndGet();
+        return buffers;
+    }
+
+    /**
+     * Gives the instance back to the pool, or to the garbage collector if the pool is full. Its
+     * buffers must not be used anymore.
+     */
+    void release() {
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(this);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param size - number of bytes needed
+     * @return a buffer of at least the supplied size, owned by this instance
+     */
+    byte[] bytes(final int size) {
+
+        if (size <= this.bytes.length) {
+            return this.bytes;
+        }
+
+        byte[] bytes = new byte[size];
+
+        if (size <= RETAINED_SIZE) {
+            this.bytes = bytes;
+        }
+
+        return bytes;
+    }
+
+    /**
+     * Decodes bytes with a reused decoder into a reused char buffer. Malformed input is replaced,
+     * as {@link java.io.InputStreamReader} does.
+     *
+     * @param data - buffer holding the bytes
+     * @param offset - offset of the bytes in the buffer
+     * @param length - number of bytes
+     * @param charset - charset of the bytes
+     * @return the decoded chars, from position 0 to the limit, owned by this instance
+     */
+    CharBuffer decode(final byte[] data, final int offset, final int length, final Charset charset) {
+        CharsetDecoder decoder = this.decoder;
+
+        if (decoder == null || !decoder.charset().equals(charset)) {
+            decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.decoder = decoder;
+        }
+
+        int capacity = (int) Math.ceil(length * (double) decoder.maxCharsPerByte()) + 1;
+
+        while (true) {
+            char[] chars = this.chars;
+
+            if (capacity > chars.length) {
+                chars = new char[capacity];
+
+                if (capacity <= RETAINED_SIZE) {
+                    this.chars = chars;
+                }
+            }
+
+            CharBuffer out = CharBuffer.wrap(chars);
+            CoderResult result = decoder.reset().decode(ByteBuffer.wrap(data, offset, length), out, true);
+
+            if (result.isUnderflow()) {
+                result = decoder.flush(out);
+            }
+
+            if (result.isUnderflow()) {
+                out.flip();
+                return out;
+            }
+
+            // Only reached by charsets whose flush writes more than maxCharsPerByte accounts for
+            capacity = chars.length * 2;
+        }
+    }
+
+}
@@ -0,0 +1,285 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Caching facade in front of a {@link MCPingClient}.
+ * <p>
+ * Concurrent requests for the same target, protocol version and field selection share a single
+ * ping. Successful responses are kept in a size-bounded LRU cache and served as-is for
+ * {@link #getTtl()}. For {@link #getStaleWhileRevalidate()} after that, the cached response is
+ * still served immediately while a refresh runs in the background. If a refresh fails, a response
+ * no older than {@link #getTtl()} plus {@link #getMaxStale()} is served instead of the error.
+ * Failures are never cached.
+ */
+@Builder
+public class MCPingCache {
+
+    /**
+     * @return Client the pings are made with
+     */
+    @Getter
+    private final MCPingClient client;
+
+    /**
+     * @return Time a response is served without pinging again, in milliseconds
+     */
+    @Getter
+    @Builder.Default
+    private final long ttl = TimeUnit.SECONDS.toMillis(5);
+
+    /**
+     * @return Time after {@link #getTtl()} a response is still served while it is refreshed in
+     *         the background, in milliseconds
+     */
+    @Getter
+    @Builder.Default
+    private final long staleWhileRevalidate = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * @return Time after {@link #getTtl()} a response is served when pinging the server fails, in
+     *         milliseconds
+     */
+    @Getter
+    @Builder.Default
+    private final long maxStale = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * @return Maximum number of responses kept in the cache
+     */
+    @Getter
+    @Builder.Default
+    private final int maxSize = 10_000;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    private final Map<Key, CompletableFuture<MCPingResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<Key, CachedResponse> cache = new LinkedHashMap<Key, CachedResponse>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Key, CachedResponse> eldest) {
+            return this.size() > MCPingCache.this.maxSize;
+        }
+
+    };
+
+    /**
+     * Fetches a {@link MCPingResponse} for the supplied options, from the cache when possible.
+     *
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @return {@link MCPingResponse}, shared with every other caller of the same target
+     * @throws IOException if the server could not be pinged and no usable response is cached
+     */
+    public MCPingResponse getPing(final MCPingOptions options) throws IOException {
+        try {
+            return this.ping(options).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Asynchronously fetches a {@link MCPingResponse} for the supplied options, from the cache
+     * when possible.
+     *
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @return a future completed with the {@link MCPingResponse}, or exceptionally with an
+     *         {@link IOException}
+     */
+    public CompletableFuture<MCPingResponse> ping(final MCPingOptions options) {
+
+        Objects.requireNonNull(options.getHostname(), "Hostname cannot be null.");
+
+        Key key = new Key(options);
+        CachedResponse cached;
+
+        synchronized (this.cache) {
+            cached = this.cache.get(key);
+        }
+
+        if (cached != null) {
+            long age = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cached.time);
+
+            if (age <= this.ttl) {
+                this.hits.increment();
+                return CompletableFuture.completedFuture(cached.response);
+            }
+
+            if (age <= this.ttl + this.staleWhileRevalidate) {
+                this.staleHits.increment();
+                this.load(key, options);
+                return CompletableFuture.completedFuture(cached.response);
+            }
+        }
+
+        this.misses.increment();
+
+        if (cached == null || this.maxStale <= 0) {
+            return this.load(key, options);
+        }
+
+        CompletableFuture<MCPingResponse> future = new CompletableFuture<>();
+
+        this.load(key, options).whenComplete((response, ex) -> {
+            if (ex == null) {
+                future.complete(response);
+            } else if (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cached.time) <= this.ttl + this.maxStale) {
+                this.staleHits.increment();
+                future.complete(cached.response);
+            } else {
+                future.completeExceptionally(ex);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Drops the cached response of the supplied options, if any. A ping already in flight is not
+     * cancelled.
+     *
+     * @param options - a filled instance of {@link MCPingOptions}
+     */
+    public void invalidate(final MCPingOptions options) {
+        synchronized (this.cache) {
+            this.cache.remove(new Key(options));
+        }
+    }
+
+    /**
+     * @return Number of requests answered with a fresh cached response
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return Number of requests answered with a stale cached response, while revalidating or
+     *         after a failed ping
+     */
+    public long getStaleHits() {
+        return this.staleHits.sum();
+    }
+
+    /**
+     * @return Number of requests that had to wait for a ping
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return Number of pings that were not made because an identical one was already in flight
+     */
+    public long getCoalesced() {
+        return this.coalesced.sum();
+    }
+
+    /**
+     * @return Number of responses currently cached, expired ones included
+     */
+    public int getSize() {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    /**
+     * Drops every cached response.
+     */
+    public void clear() {
+        synchronized (this.cache) {
+            this.cache.clear();
+        }
+    }
+
+    /**
+     * @return the in-flight ping of the key, started if there was none
+     */
+    private CompletableFuture<MCPingResponse> load(final Key key, final MCPingOptions options) {
+
+        CompletableFuture<MCPingResponse> future = this.inFlight.get(key);
+
+        if (future == null) {
+            CompletableFuture<MCPingResponse> created = new CompletableFuture<>();
+            future = this.inFlight.putIfAbsent(key, created);
+
+            if (future == null) {
+                this.client.ping(options).whenComplete((response, ex) -> {
+                    if (ex == null) {
+                        synchronized (this.cache) {
+                            this.cache.put(key, new CachedResponse(response, System.nanoTime()));
+                        }
+                    }
+
+                    this.inFlight.remove(key, created);
+
+                    if (ex == null) {
+                        created.complete(response);
+                    } else {
+                        created.completeExceptionally(ex);
+                    }
+                });
+
+                return created;
+            }
+        }
+
+        this.coalesced.increment();
+        return future;
+    }
+
+    @EqualsAndHashCode
+    private static final class Key {
+
+        private final MCPingTarget target;
+        private final int protocolVersion;
+        private final Set<MCPingField> fields;
+
+        private Key(final MCPingOptions options) {
+            this.target = MCPingTarget.of(options);
+            this.protocolVersion = options.getProtocolVersion();
+            // A copy, so a caller changing its set cannot strand the entry in the map
+            this.fields = Collections.unmodifiableSet(options.getFields().isEmpty()
+                    ? EnumSet.noneOf(MCPingField.class) : EnumSet.copyOf(options.getFields()));
+        }
+
+    }
+
+    private static final class CachedResponse {
+
+        private final MCPingResponse response;
+        private final long time;
+
+        private CachedResponse(final MCPingResponse response, final long time) {
+            this.response = response;
+            this.time = time;
+        }
+
+    }
+
+}
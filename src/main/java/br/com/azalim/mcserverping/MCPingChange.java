@@ -0,0 +1,96 @@
+package br.com.azalim.mcserverping;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A change between two successive observations of a target, emitted by {@link MCPingDiffer}.
+ */
+@Getter
+@ToString
+public class MCPingChange {
+
+    /**
+     * Kinds of change.
+     */
+    public enum Type {
+
+        /**
+         * The target answered for the first time, or again after being offline
+         */
+        ONLINE,
+
+        /**
+         * The target stopped answering
+         */
+        OFFLINE,
+
+        /**
+         * The online player count changed, see {@link MCPingChange#getDelta()}
+         */
+        PLAYERS_ONLINE,
+
+        /**
+         * The maximum player count changed, see {@link MCPingChange#getDelta()}
+         */
+        PLAYERS_MAX,
+
+        /**
+         * The player sample changed
+         */
+        PLAYER_SAMPLE,
+
+        /**
+         * The description changed
+         */
+        DESCRIPTION,
+
+        /**
+         * The version name or protocol changed
+         */
+        VERSION,
+
+        /**
+         * The favicon changed
+         */
+        FAVICON
+
+    }
+
+    /**
+     * @return Target that changed
+     */
+    private final MCPingTarget target;
+
+    /**
+     * @return Kind of change
+     */
+    private final Type type;
+
+    /**
+     * @return The new response, null for {@link Type#OFFLINE}
+     */
+    @ToString.Exclude
+    private final MCPingResponse response;
+
+    /**
+     * @return Difference of the player count for {@link Type#PLAYERS_ONLINE} and
+     *         {@link Type#PLAYERS_MAX}, 0 otherwise
+     */
+    private final int delta;
+
+    /**
+     * @return Failure that made the target go offline, null for other types
+     */
+    private final MCPingFailure failure;
+
+    MCPingChange(final MCPingTarget target, final Type type, final MCPingResponse response, final int delta,
+            final MCPingFailure failure) {
+        this.target = target;
+        this.type = type;
+        this.response = response;
+        this.delta = delta;
+        this.failure = failure;
+    }
+
+}
@@ -0,0 +1,394 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+/**
+ * Renders chat components, as found in the description of status responses, to legacy text.
+ * <p>
+ * Components are read straight from the {@link JsonReader} into a small tree, since their fields
+ * can come in any order, and rendered the way BungeeCord's {@code toLegacyText()} does: each
+ * component is prefixed with its color, white by default, then its formats, each inherited from
+ * the parent component when unset. Translatable components are rendered with their fallback, or
+ * their key, as the format string, since no translations are bundled.
+ */
+final class MCPingChatRenderer {
+
+    private static final Map<String, String> COLORS = new HashMap<>();
+
+    static {
+        String[] names = {
+                "black", "dark_blue", "dark_green", "dark_aqua", "dark_red", "dark_purple", "gold", "gray",
+                "dark_gray", "blue", "green", "aqua", "red", "light_purple", "yellow", "white"
+        };
+
+        for (int i = 0; i < names.length; i++) {
+            COLORS.put(names[i], code(Character.forDigit(i, 16)));
+        }
+
+        COLORS.put("obfuscated", code('k'));
+        COLORS.put("bold", code('l'));
+        COLORS.put("strikethrough", code('m'));
+        COLORS.put("underline", code('n'));
+        COLORS.put("italic", code('o'));
+        COLORS.put("reset", code('r'));
+    }
+
+    private static final Component ROOT = new Component();
+
+    static {
+        ROOT.color = COLORS.get("white");
+        ROOT.bold = false;
+        ROOT.italic = false;
+        ROOT.underlined = false;
+        ROOT.strikethrough = false;
+        ROOT.obfuscated = false;
+    }
+
+    private MCPingChatRenderer() {
+    }
+
+    /**
+     * Reads a component, or an array of components, and renders it to legacy text.
+     *
+     * @param in - reader positioned at the component
+     * @return the legacy text, with {@code §} color and format codes
+     * @throws IOException if the component cannot be read
+     */
+    static String readLegacyText(final JsonReader in) throws IOException {
+
+        List<Component> components = in.peek() == JsonToken.BEGIN_ARRAY
+                ? readComponents(in)
+                : Collections.singletonList(readComponent(in));
+
+        StringBuilder out = new StringBuilder();
+
+        // Rendered as the children of an empty white root component, like BungeeCord does
+        ROOT.appendFormat(out);
+
+        for (Component component : components) {
+            if (component != null) {
+                render(component, ROOT, out);
+            }
+        }
+
+        return out.toString();
+    }
+
+    private static void render(final Component component, final Component parent, final StringBuilder out) {
+
+        Component style = component.inherit(parent);
+
+        if (component.translate == null) {
+            style.appendFormat(out);
+            out.append(component.text);
+        } else {
+            renderTranslation(component, style, out);
+        }
+
+        if (component.extra != null) {
+            for (Component child : component.extra) {
+                if (child != null) {
+                    render(child, style, out);
+                }
+            }
+        }
+    }
+
+    private static void renderTranslation(final Component component, final Component style, final StringBuilder out) {
+
+        String format = component.text;
+        int length = format.length();
+        int next = 0;
+        int start = 0;
+
+        for (int i = 0; i < length; i++) {
+            if (format.charAt(i) != '%' || i + 1 >= length) {
+                continue;
+            }
+
+            // %s, %n$s and %%
+            int end = i + 1;
+            int index = -1;
+
+            while (end < length && Character.isDigit(format.charAt(end))) {
+                end++;
+            }
+
+            if (end > i + 1 && end + 1 < length && format.charAt(end) == '$' && format.charAt(end + 1) == 's') {
+                index = Integer.parseInt(format.substring(i + 1, end)) - 1;
+                end += 2;
+            } else if (format.charAt(i + 1) == 's') {
+                index = next++;
+                end = i + 2;
+            } else if (format.charAt(i + 1) == '%') {
+                end = i + 2;
+            } else {
+                continue;
+            }
+
+            style.appendFormat(out);
+            out.append(format, start, i);
+
+            if (index == -1) {
+                out.append('%');
+            } else if (component.with != null && index >= 0 && index < component.with.size()
+                    && component.with.get(index) != null) {
+                render(component.with.get(index), style, out);
+            }
+
+            start = end;
+            i = end - 1;
+        }
+
+        if (start < length) {
+            style.appendFormat(out);
+            out.append(format, start, length);
+        }
+    }
+
+    private static List<Component> readComponents(final JsonReader in) throws IOException {
+
+        List<Component> components = new ArrayList<>();
+
+        in.beginArray();
+
+        while (in.hasNext()) {
+            components.add(readComponent(in));
+        }
+
+        in.endArray();
+
+        return components;
+    }
+
+    private static Component readComponent(final JsonReader in) throws IOException {
+
+        Component component = new Component();
+
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BEGIN_ARRAY:
+                component.extra = readComponents(in);
+                return component;
+            case BEGIN_OBJECT:
+                break;
+            default:
+                component.text = readText(in);
+                return component;
+        }
+
+        String fallback = null;
+
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "text":
+                    component.text = readText(in);
+                    break;
+                case "translate":
+                    component.translate = readText(in);
+                    break;
+                case "fallback":
+                    fallback = readText(in);
+                    break;
+                case "with":
+                    if (in.peek() == JsonToken.BEGIN_ARRAY) {
+                        component.with = readComponents(in);
+                    } else {
+                        in.skipValue();
+                    }
+                    break;
+                case "keybind":
+                    component.text = readText(in);
+                    break;
+                case "selector":
+                    component.text = readText(in);
+                    break;
+                case "score":
+                    component.text = readScore(in);
+                    break;
+                case "color":
+                    component.color = readColor(in);
+                    break;
+                case "bold":
+                    component.bold = readBoolean(in);
+                    break;
+                case "italic":
+                    component.italic = readBoolean(in);
+                    break;
+                case "underlined":
+                    component.underlined = readBoolean(in);
+                    break;
+                case "strikethrough":
+                    component.strikethrough = readBoolean(in);
+                    break;
+                case "obfuscated":
+                    component.obfuscated = readBoolean(in);
+                    break;
+                case "extra":
+                    component.extra = in.peek() == JsonToken.BEGIN_ARRAY
+                            ? readComponents(in)
+                            : Collections.singletonList(readComponent(in));
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        in.endObject();
+
+        if (component.translate != null) {
+            component.text = fallback != null ? fallback : component.translate;
+        }
+
+        return component;
+    }
+
+    private static String readScore(final JsonReader in) throws IOException {
+
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+            in.skipValue();
+            return "";
+        }
+
+        String value = "";
+
+        in.beginObject();
+
+        while (in.hasNext()) {
+            if ("value".equals(in.nextName())) {
+                value = readText(in);
+            } else {
+                in.skipValue();
+            }
+        }
+
+        in.endObject();
+
+        return value;
+    }
+
+    /**
+     * @return the legacy code of the color, or null if it is unknown
+     */
+    private static String readColor(final JsonReader in) throws IOException {
+
+        String color = readText(in);
+
+        if (color.length() == 7 && color.charAt(0) == '#') {
+            StringBuilder code = new StringBuilder(14).append(MCPingUtil.COLOR_CHAR).append('x');
+
+            for (int i = 1; i < 7; i++) {
+                char c = color.charAt(i);
+
+                if (!(c >= '0' && c <= '9') && !(c >= 'a' && c <= 'f') && !(c >= 'A' && c <= 'F')) {
+                    return null;
+                }
+
+                code.append(MCPingUtil.COLOR_CHAR).append(c);
+            }
+
+            return code.toString();
+        }
+
+        return COLORS.get(color.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the boolean, or null if the value is not one
+     */
+    private static Boolean readBoolean(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.BOOLEAN) {
+            return in.nextBoolean();
+        }
+
+        in.skipValue();
+        return null;
+    }
+
+    private static String readText(final JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case STRING:
+            case NUMBER:
+                return in.nextString();
+            case BOOLEAN:
+                return String.valueOf(in.nextBoolean());
+            case NULL:
+                in.nextNull();
+                return "";
+            default:
+                in.skipValue();
+                return "";
+        }
+    }
+
+    private static String code(final char code) {
+        return new String(new char[] { MCPingUtil.COLOR_CHAR, code });
+    }
+
+    private static final class Component {
+
+        private String text = "";
+        private String translate;
+        private List<Component> with;
+        private List<Component> extra;
+
+        private String color;
+        private Boolean bold;
+        private Boolean italic;
+        private Boolean underlined;
+        private Boolean strikethrough;
+        private Boolean obfuscated;
+
+        /**
+         * @return a component holding the effective style of this one
+         */
+        private Component inherit(final Component parent) {
+            Component style = new Component();
+            style.color = this.color != null ? this.color : parent.color;
+            style.bold = this.bold != null ? this.bold : parent.bold;
+            style.italic = this.italic != null ? this.italic : parent.italic;
+            style.underlined = this.underlined != null ? this.underlined : parent.underlined;
+            style.strikethrough = this.strikethrough != null ? this.strikethrough : parent.strikethrough;
+            style.obfuscated = this.obfuscated != null ? this.obfuscated : parent.obfuscated;
+            return style;
+        }
+
+        /**
+         * Appends the color and formats of this component, which must have every style set.
+         */
+        private void appendFormat(final StringBuilder out) {
+            out.append(this.color);
+
+            if (this.bold) {
+                out.append(MCPingUtil.COLOR_CHAR).append('l');
+            }
+            if (this.italic) {
+                out.append(MCPingUtil.COLOR_CHAR).append('o');
+            }
+            if (this.underlined) {
+                out.append(MCPingUtil.COLOR_CHAR).append('n');
+            }
+            if (this.strikethrough) {
+                out.append(MCPingUtil.COLOR_CHAR).append('m');
+            }
+            if (this.obfuscated) {
+                out.append(MCPingUtil.COLOR_CHAR).append('k');
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,295 @@
+package br.com.azalim.mcserverping;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Command line entry point that pings a list of servers and writes one NDJSON line per result.
+ * <p>
+ * Targets are read as a stream, one {@code host}, {@code host:port} or {@code [address]:port} per
+ * line, from a file or from the standard input. Blank lines and lines starting with {@code #} are
+ * skipped. At most {@code --concurrency} pings are in flight at once: reading the list waits for a
+ * slot, so memory use does not depend on the length of the list.
+ * <p>
+ * Each result is written to the standard output as soon as it completes, and a throughput and
+ * latency summary is written to the standard error at the end.
+ */
+public final class MCPingCli {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -jar mcserverping-cli.jar [options] [file]",
+            "",
+            "Pings every server listed in the file, or in the standard input if the file is - or omitted.",
+            "",
+            "Options:",
+            "  -c, --concurrency <n>   maximum number of pings in flight (default: 256)",
+            "  -t, --timeout <ms>      connect and read timeout (default: 5000)",
+            "  -p, --port <port>       port of targets that do not specify one (default: 25565)",
+            "      --no-favicon        leave favicons out of the output",
+            "  -h, --help              show this message");
+
+    private final int concurrency;
+    private final Semaphore slots;
+    private final Writer out;
+    private final MCPingResponseAdapter adapter;
+
+    private final MCPingHistogram latency = new MCPingHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final Map<MCPingFailure, LongAdder> failures = new ConcurrentHashMap<>();
+
+    private MCPingCli(final int concurrency, final Writer out, final Set<MCPingField> fields) {
+        this.concurrency = concurrency;
+        this.slots = new Semaphore(concurrency);
+        this.out = out;
+        this.adapter = MCPingResponseAdapter.of(fields, false);
+    }
+
+    public static void main(final String[] args) throws IOException, InterruptedException {
+
+        int concurrency = 256;
+        int timeout = 5000;
+        int port = 25565;
+        String file = "-";
+        Set<MCPingField> fields = EnumSet.allOf(MCPingField.class);
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-c":
+                    case "--concurrency":
+                        concurrency = Integer.parseInt(args[++i]);
+                        break;
+                    case "-t":
+                    case "--timeout":
+                        timeout = Integer.parseInt(args[++i]);
+                        break;
+                    case "-p":
+                    case "--port":
+                        port = Integer.parseInt(args[++i]);
+                        break;
+                    case "--no-favicon":
+                        fields.remove(MCPingField.FAVICON);
+                        break;
+                    case "-h":
+                    case "--help":
+                        System.out.println(USAGE);
+                        return;
+                    default:
+                        if (args[i].startsWith("-") && args[i].length() > 1) {
+                            throw new IllegalArgumentException("Unknown option " + args[i]);
+                        }
+                        file = args[i];
+                }
+            }
+
+            if (concurrency <= 0 || timeout <= 0) {
+                throw new IllegalArgumentException("Concurrency and timeout must be positive.");
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value." : e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        MCPingCli cli = new MCPingCli(concurrency, out, fields);
+
+        MCPingClientOptions clientOptions = MCPingClientOptions.builder().maxInFlight(concurrency).build();
+
+        try (BufferedReader in = "-".equals(file)
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8);
+                MCPingClient client = new MCPingClient(clientOptions)) {
+
+            MCPingOptions.MCPingOptionsBuilder options = MCPingOptions.builder()
+                    .timeout(timeout)
+                    .readTimeout(timeout)
+                    .fields(fields);
+
+            long start = System.nanoTime();
+            cli.run(in, client, options, port);
+            cli.summarize(System.err, System.nanoTime() - start);
+        }
+    }
+
+    private void run(final BufferedReader in, final MCPingClient client,
+            final MCPingOptions.MCPingOptionsBuilder options, final int port) throws IOException, InterruptedException {
+
+        String line;
+
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            MCPingTarget target;
+
+            try {
+                target = parseTarget(line, port);
+            } catch (IllegalArgumentException e) {
+                this.failed(line, MCPingFailure.RESOLVE, e.getMessage());
+                continue;
+            }
+
+            this.slots.acquire();
+
+            client.ping(options.hostname(target.getHostname()).port(target.getPort()).build())
+                    .whenComplete((response, error) -> {
+                        try {
+                            if (error == null) {
+                                this.latency.record(response.getTimings().getTotal());
+                                this.succeeded.increment();
+                                this.write(target.toString(), response, null, null);
+                            } else {
+                                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                        ? error.getCause()
+                                        : error;
+                                this.failed(target.toString(), MCPingFailure.of(cause), String.valueOf(cause));
+                            }
+                        } finally {
+                            this.slots.release();
+                        }
+                    });
+        }
+
+        // Every slot is free again once the pings still in flight complete
+        this.slots.acquire(this.concurrency);
+    }
+
+    private void failed(final String target, final MCPingFailure failure, final String error) {
+        this.failures.computeIfAbsent(failure, key -> new LongAdder()).increment();
+        this.write(target, null, failure, error);
+    }
+
+    private void write(final String target, final MCPingResponse response, final MCPingFailure failure,
+            final String error) {
+
+        StringWriter line = new StringWriter();
+
+        try (JsonWriter json = new JsonWriter(line)) {
+            json.beginObject();
+            json.name("target").value(target);
+
+            if (response != null) {
+                json.name("ok").value(true);
+                json.name("latency_ms").value(TimeUnit.NANOSECONDS.toMillis(response.getTimings().getTotal()));
+                json.name("hostname").value(response.getHostname());
+                json.name("port").value(response.getPort());
+                json.name("response");
+                this.adapter.write(json, response);
+            } else {
+                json.name("ok").value(false);
+                json.name("failure").value(failure.name());
+                json.name("error").value(error);
+            }
+
+            json.endObject();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+
+        synchronized (this.out) {
+            try {
+                this.out.write(line.toString());
+                this.out.write('\n');
+                this.out.flush();
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not write to the standard output.", e);
+            }
+        }
+    }
+
+    private void summarize(final PrintStream err, final long elapsed) {
+        long succeeded = this.succeeded.sum();
+        Map<MCPingFailure, Long> failures = new EnumMap<>(MCPingFailure.class);
+        this.failures.forEach((failure, count) -> failures.put(failure, count.sum()));
+
+        long failed = failures.values().stream().mapToLong(Long::longValue).sum();
+        double seconds = elapsed / 1e9;
+
+        err.println(String.format(Locale.ROOT, "%d pinged in %.2f s (%.1f/s): %d succeeded, %d failed%s",
+                succeeded + failed, seconds, (succeeded + failed) / seconds, succeeded, failed,
+                failures.isEmpty() ? "" : " " + failures));
+
+        if (succeeded > 0) {
+            err.println(String.format(Locale.ROOT, "Latency (ms): mean %.1f, p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+                    this.latency.getMean() / 1e6,
+                    this.latency.getPercentile(50) / 1e6,
+                    this.latency.getPercentile(90) / 1e6,
+                    this.latency.getPercentile(99) / 1e6,
+                    this.latency.getMax() / 1e6));
+        }
+    }
+
+    /**
+     * @param line - {@code host}, {@code host:port} or {@code [address]:port}; an IPv6 address
+     *        without brackets has no port
+     * @param port - port used when the line does not specify one
+     * @return the target of the line
+     */
+    static MCPingTarget parseTarget(final String line, final int port) {
+        String host = line;
+        String portText = null;
+
+        if (line.startsWith("[")) {
+            int end = line.indexOf(']');
+
+            if (end == -1) {
+                throw new IllegalArgumentException("Unclosed bracket in " + line);
+            }
+
+            host = line.substring(1, end);
+
+            if (end + 1 < line.length()) {
+                if (line.charAt(end + 1) != ':') {
+                    throw new IllegalArgumentException("Unexpected text after address in " + line);
+                }
+                portText = line.substring(end + 2);
+            }
+        } else if (line.indexOf(':') != -1 && line.indexOf(':') == line.lastIndexOf(':')) {
+            host = line.substring(0, line.indexOf(':'));
+            portText = line.substring(line.indexOf(':') + 1);
+        }
+
+        int parsed = port;
+
+        if (portText != null) {
+            try {
+                parsed = Integer.parseInt(portText);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid port in " + line);
+            }
+        }
+
+        if (host.isEmpty() || parsed <= 0 || parsed > 65535) {
+            throw new IllegalArgumentException("Invalid target " + line);
+        }
+
+        return MCPingTarget.of(host, parsed);
+    }
+
+}
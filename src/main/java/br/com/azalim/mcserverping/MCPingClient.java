@@ -0,0 +1,765 @@
+package br.com.azalim.mcserverping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Non-blocking counterpart of {@link MCPing#getPing(MCPingOptions)}.
+ * <p>
+ * Requests go through two stages. The resolve stage looks up SRV records and hostnames on a pool
+ * of {@link MCPingClientOptions#getResolverThreads()} threads, and hands resolved addresses to the
+ * connect stage as soon as they are ready. The connect stage is a single selector thread driving
+ * the handshake, status and ping exchange of every target, so thousands of servers can be pinged
+ * without dedicating a thread to each one. At most {@link MCPingClientOptions#getMaxInFlight()}
+ * connections are open at once; resolved targets wait in a queue until a slot frees up.
+ * <p>
+ * Since the stages have their own limits, slow DNS answers never hold a connection slot, and
+ * targets that are already resolved keep connecting while the resolvers are busy.
+ * <p>
+ * With a {@link MCPingOptions#getTimeoutEstimator()}, connections are given up after the timeouts
+ * derived from past pings of the target instead of the fixed ones. When
+ * {@link MCPingClientOptions#isHedge()} is set, a ping that takes longer than its target usually
+ * takes is raced by a second attempt, and whichever answers first completes the future. Listeners
+ * and the estimator see a hedged ping once: the phases of the attempt that answers, or a single
+ * timeout if neither does.
+ * <p>
+ * Returned futures are completed on the selector thread, so expensive dependent work should use
+ * the {@code *Async} variants of {@link CompletableFuture}.
+ */
+public class MCPingClient implements Closeable {
+
+    private static final long SWEEP_INTERVAL = 100;
+    private static final int BUFFER_SIZE = 1024;
+
+    private final MCPingClientOptions options;
+    private final ThreadPoolExecutor resolvers;
+    private final Selector selector;
+    private final Thread thread;
+
+    private final Queue<Session> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Set<Session> active = new HashSet<>();
+    private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+    private volatile int activeCount;
+    private volatile long hedged;
+
+    private volatile boolean closed;
+
+    public MCPingClient() throws IOException {
+        this(MCPingClientOptions.builder().build());
+    }
+
+    public MCPingClient(final MCPingClientOptions options) throws IOException {
+        if (options.getMaxInFlight() <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive.");
+        }
+
+        if (options.getResolverThreads() <= 0) {
+            throw new IllegalArgumentException("resolverThreads must be positive.");
+        }
+
+        AtomicInteger resolverId = new AtomicInteger();
+
+        this.options = options;
+        this.resolvers = new ThreadPoolExecutor(options.getResolverThreads(), options.getResolverThreads(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread resolver = new Thread(runnable, "MCPingClient-resolver-" + resolverId.incrementAndGet());
+                    resolver.setDaemon(true);
+                    return resolver;
+                });
+        this.selector = Selector.open();
+        this.thread = new Thread(this::run, "MCPingClient");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Asynchronously fetches a {@link MCPingResponse} for the supplied options.
+     *
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @return a future completed with the {@link MCPingResponse}, or exceptionally with an
+     *         {@link IOException}
+     */
+    public CompletableFuture<MCPingResponse> ping(final MCPingOptions options) {
+
+        Objects.requireNonNull(options.getHostname(), "Hostname cannot be null.");
+
+        CompletableFuture<MCPingResponse> future = new CompletableFuture<>();
+        options.getListener().onStart(options);
+
+        if (this.closed) {
+            fail(options, future, new IOException("Client is closed."));
+            return future;
+        }
+
+        try {
+            this.resolvers.execute(new Resolution(options, future));
+        } catch (RejectedExecutionException e) {
+            fail(options, future, new IOException("Client is closed."));
+        }
+
+        return future;
+    }
+
+    /**
+     * Asynchronously pings every supplied target.
+     *
+     * @param options - filled instances of {@link MCPingOptions}
+     * @return one future per target, in iteration order
+     */
+    public List<CompletableFuture<MCPingResponse>> pingAll(final Iterable<MCPingOptions> options) {
+        List<CompletableFuture<MCPingResponse>> futures = new ArrayList<>();
+        options.forEach(option -> futures.add(this.ping(option)));
+        return futures;
+    }
+
+    /**
+     * Asynchronously pings every target of the supplied stream.
+     *
+     * @param options - a stream of filled instances of {@link MCPingOptions}
+     * @return one future per target, in encounter order
+     */
+    public List<CompletableFuture<MCPingResponse>> pingAll(final Stream<MCPingOptions> options) {
+        return options.map(this::ping).collect(Collectors.toList());
+    }
+
+    /**
+     * @return Number of targets waiting for a resolver thread
+     */
+    public int getResolveQueueDepth() {
+        return this.resolvers.getQueue().size();
+    }
+
+    /**
+     * @return Number of targets being resolved right now
+     */
+    public int getResolving() {
+        return this.resolvers.getActiveCount();
+    }
+
+    /**
+     * @return Number of resolved targets waiting for a connection slot
+     */
+    public int getConnectQueueDepth() {
+        return this.pendingCount.get();
+    }
+
+    /**
+     * @return Number of connections currently open
+     */
+    public int getInFlight() {
+        return this.activeCount;
+    }
+
+    /**
+     * @return Number of pings that were slow enough to be hedged, see
+     *         {@link MCPingClientOptions#isHedge()}
+     */
+    public long getHedged() {
+        return this.hedged;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+
+        // Resolutions that never started would leave their futures pending forever
+        for (Runnable task : this.resolvers.shutdownNow()) {
+            Resolution resolution = (Resolution) task;
+            fail(resolution.options, resolution.future, new IOException("Client is closed."));
+        }
+
+        this.selector.wakeup();
+
+        if (Thread.currentThread() != this.thread) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void resolve(final MCPingOptions options, final CompletableFuture<MCPingResponse> future) {
+
+        MCPingTimings timings = new MCPingTimings();
+        long start = System.nanoTime();
+        List<InetSocketAddress> addresses;
+
+        try {
+            addresses = MCPingConnector.resolve(options);
+        } catch (IOException e) {
+            fail(options, future, e);
+            return;
+        } catch (RuntimeException e) {
+            fail(options, future, new MCPingException(MCPingFailure.RESOLVE, "Could not resolve address.", e));
+            return;
+        }
+
+        timings.setResolve(System.nanoTime() - start);
+        options.getListener().onResolved(options, addresses.get(0), timings.getResolve());
+
+        Session session = new Session(options, addresses, timings, future);
+        this.pending.add(session);
+        this.pendingCount.incrementAndGet();
+
+        if (this.closed && this.pending.remove(session)) {
+            this.pendingCount.decrementAndGet();
+            fail(options, future, new IOException("Client is closed."));
+            return;
+        }
+
+        this.selector.wakeup();
+    }
+
+    private void run() {
+        long lastSweep = System.nanoTime();
+
+        try {
+            while (!this.closed) {
+                this.admit();
+                this.selector.select(SWEEP_INTERVAL);
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    this.handle((Session) key.attachment(), key);
+                }
+
+                long now = System.nanoTime();
+
+                if (now - lastSweep >= TimeUnit.MILLISECONDS.toNanos(SWEEP_INTERVAL)) {
+                    this.sweep(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            this.closed = true;
+        } finally {
+            IOException cause = new IOException("Client is closed.");
+
+            new ArrayList<>(this.active).forEach(session -> this.fail(session, cause));
+
+            Session session;
+            while ((session = this.pending.poll()) != null) {
+                this.pendingCount.decrementAndGet();
+                this.fail(session, cause);
+            }
+
+            try {
+                this.selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void admit() {
+        while (this.active.size() < this.options.getMaxInFlight()) {
+            Session session = this.pending.poll();
+
+            if (session == null) {
+                return;
+            }
+
+            this.pendingCount.decrementAndGet();
+            this.active.add(session);
+            this.activeCount = this.active.size();
+
+            try {
+                session.connect();
+            } catch (IOException e) {
+                this.fail(session, e);
+            }
+        }
+    }
+
+    private void sweep(final long now) {
+        for (Session session : new ArrayList<>(this.active)) {
+            if (now - session.deadline >= 0) {
+                this.fail(session, new SocketTimeoutException(session.state == State.CONNECTING
+                        ? "Connect timed out." : "Read timed out."));
+                continue;
+            }
+
+            if (session.hedgeAt != Long.MAX_VALUE && now - session.hedgeAt >= 0) {
+                this.hedge(session);
+            }
+
+            if (session.state == State.CONNECTING && now - session.nextAttempt >= 0
+                    && session.next < session.addresses.size()) {
+                try {
+                    session.attempt();
+                } catch (IOException e) {
+                    this.fail(session, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues a second attempt of a ping that is slower than expected. Whichever of the two answers
+     * first completes the future, and the other one is abandoned.
+     */
+    private void hedge(final Session session) {
+        MCPingTimings timings = new MCPingTimings();
+        timings.setResolve(session.timings.getResolve());
+
+        Session hedge = new Session(session.options, session.addresses, timings, session.future);
+        hedge.partner = session;
+        session.partner = hedge;
+        session.hedgeAt = Long.MAX_VALUE;
+
+        this.hedged++;
+        this.pending.add(hedge);
+        this.pendingCount.incrementAndGet();
+    }
+
+    /**
+     * @return a read buffer, reused from a finished session when there is one
+     */
+    private ByteBuffer acquire() {
+        ByteBuffer buffer = this.buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocate(BUFFER_SIZE);
+    }
+
+    private void release(final ByteBuffer buffer) {
+        // Buffers grown for unusually large responses are left to the garbage collector
+        if (buffer.capacity() <= MCPingBuffers.RETAINED_SIZE) {
+            buffer.clear();
+            this.buffers.push(buffer);
+        }
+    }
+
+    private void abandon(final Session session) {
+        if (this.active.remove(session)) {
+            this.activeCount = this.active.size();
+            session.close();
+        } else if (this.pending.remove(session)) {
+            this.pendingCount.decrementAndGet();
+        }
+    }
+
+    private void handle(final Session session, final SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+
+            if (key.isConnectable()) {
+                session.finishConnect(key);
+            } else if (key.isWritable()) {
+                session.write();
+            } else if (key.isReadable()) {
+                session.read();
+            }
+
+            if (session.state == State.DONE) {
+                this.finish(session);
+            }
+        } catch (IOException | RuntimeException e) {
+            this.fail(session, e);
+        }
+    }
+
+    private void finish(final Session session) {
+        this.active.remove(session);
+        this.activeCount = this.active.size();
+        session.close();
+
+        Session partner = session.partner;
+        MCPingListener listener = session.options.getListener();
+
+        if (partner != null) {
+            this.abandon(partner);
+        }
+
+        // The phases of a hedged ping were held back until one of its attempts answered
+        if (!session.connectReported && (partner == null || !partner.connectReported)) {
+            listener.onConnected(session.options, session.timings.getConnect());
+        }
+
+        if (!session.statusReported && (partner == null || !partner.statusReported)) {
+            listener.onStatus(session.options, session.timings.getStatus());
+        }
+
+        if (session.estimator != null) {
+            session.estimator.record(session.target, session.timings);
+        }
+
+        MCPingResponse response = session.response;
+        response.setPing(TimeUnit.NANOSECONDS.toMillis(session.timings.getConnect()));
+        response.setTimings(session.timings);
+        response.setHostname(session.address.getHostString());
+        response.setPort(session.address.getPort());
+        listener.onPong(session.options, response);
+        session.future.complete(response);
+    }
+
+    private void fail(final Session session, final Exception cause) {
+        this.active.remove(session);
+        this.activeCount = this.active.size();
+        session.close();
+
+        // The other attempt of a hedged ping may still answer
+        if (session.partner != null) {
+            Session partner = session.partner;
+            partner.partner = null;
+            partner.connectReported |= session.connectReported;
+            partner.statusReported |= session.statusReported;
+            return;
+        }
+
+        // Backed off once per ping, not once per attempt
+        if (cause instanceof SocketTimeoutException && session.estimator != null) {
+            session.estimator.timedOut(session.target);
+        }
+
+        fail(session.options, session.future, cause instanceof IOException ? (IOException) cause
+                : new MCPingException(MCPingFailure.IO, String.valueOf(cause.getMessage()), cause));
+    }
+
+    private static void fail(final MCPingOptions options, final CompletableFuture<MCPingResponse> future,
+            final IOException cause) {
+        options.getListener().onFailure(options, MCPingFailure.of(cause), cause);
+        future.completeExceptionally(cause);
+    }
+
+    private enum State {
+        CONNECTING, WRITING_STATUS_REQUEST, READING_STATUS, WRITING_PING, READING_PONG, DONE
+    }
+
+    /**
+     * A queued resolve stage, kept as its own type so {@link #close()} can fail the futures of the
+     * ones that never ran.
+     */
+    private final class Resolution implements Runnable {
+
+        private final MCPingOptions options;
+        private final CompletableFuture<MCPingResponse> future;
+
+        private Resolution(final MCPingOptions options, final CompletableFuture<MCPingResponse> future) {
+            this.options = options;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            resolve(this.options, this.future);
+        }
+
+    }
+
+    private final class Session {
+
+        private final MCPingOptions options;
+        private final List<InetSocketAddress> addresses;
+        private final MCPingTimings timings;
+        private final CompletableFuture<MCPingResponse> future;
+
+        private final MCPingTimeoutEstimator estimator;
+        private final MCPingTarget target;
+        private final int connectTimeout;
+        private final int readTimeout;
+        private long hedgeAt = Long.MAX_VALUE;
+        private Session partner;
+
+        /**
+         * Whether the ping reported each phase to its listener, which a hedged ping defers until
+         * one of its attempts answers.
+         */
+        private boolean connectReported;
+        private boolean statusReported;
+
+        private final List<SocketChannel> attempts = new ArrayList<>(1);
+        private int next;
+        private long nextAttempt;
+
+        private InetSocketAddress address;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private State state = State.CONNECTING;
+
+        // Deadlines are System.nanoTime() instants, so wall clock steps do not fire or stall them
+        private long deadline;
+        private long phaseStart;
+
+        private ByteBuffer out;
+        private ByteBuffer in;
+        private MCPingResponse response;
+
+        private Session(final MCPingOptions options, final List<InetSocketAddress> addresses,
+                final MCPingTimings timings, final CompletableFuture<MCPingResponse> future) {
+            this.options = options;
+            this.addresses = addresses;
+            this.timings = timings;
+            this.future = future;
+
+            this.estimator = options.getTimeoutEstimator();
+            this.target = this.estimator == null ? null : MCPingTarget.of(options);
+            this.connectTimeout = this.estimator == null ? options.getTimeout()
+                    : this.estimator.getConnectTimeout(this.target, options.getTimeout());
+            this.readTimeout = this.estimator == null ? options.getReadTimeout()
+                    : this.estimator.getReadTimeout(this.target, options.getReadTimeout());
+        }
+
+        private void connect() throws IOException {
+            this.phaseStart = System.nanoTime();
+            this.deadline = this.phaseStart + TimeUnit.MILLISECONDS.toNanos(this.connectTimeout);
+
+            if (MCPingClient.this.options.isHedge() && this.estimator != null && this.partner == null) {
+                long delay = this.estimator.getHedgeDelay(this.target);
+
+                if (delay >= 0) {
+                    this.hedgeAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+                }
+            }
+
+            this.attempt();
+        }
+
+        /**
+         * Starts connecting to the next address, racing the attempts already pending.
+         */
+        private void attempt() throws IOException {
+            InetSocketAddress address = this.addresses.get(this.next++);
+            this.nextAttempt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.options.getConnectAttemptDelay());
+
+            SocketChannel channel = SocketChannel.open();
+            SelectionKey key;
+
+            try {
+                channel.configureBlocking(false);
+                key = channel.register(MCPingClient.this.selector, SelectionKey.OP_CONNECT, this);
+                this.attempts.add(channel);
+
+                if (!channel.connect(address)) {
+                    return;
+                }
+            } catch (IOException e) {
+                this.attempts.remove(channel);
+                channel.close();
+                this.attemptFailed(e);
+                return;
+            }
+
+            this.connected(key);
+        }
+
+        private void attemptFailed(final IOException cause) throws IOException {
+            // The next address does not wait for the delay when an attempt fails
+            if (this.next < this.addresses.size()) {
+                this.attempt();
+            } else if (this.attempts.isEmpty()) {
+                throw cause;
+            }
+        }
+
+        private void finishConnect(final SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+
+            try {
+                if (!channel.finishConnect()) {
+                    return;
+                }
+            } catch (IOException e) {
+                this.attempts.remove(channel);
+                channel.close();
+                this.attemptFailed(e);
+                return;
+            }
+
+            this.connected(key);
+        }
+
+        private void connected(final SelectionKey key) throws IOException {
+            this.key = key;
+            this.channel = (SocketChannel) key.channel();
+            this.address = (InetSocketAddress) this.channel.getRemoteAddress();
+
+            for (SocketChannel attempt : this.attempts) {
+                if (attempt != this.channel) {
+                    attempt.close();
+                }
+            }
+
+            this.attempts.clear();
+            this.in = MCPingClient.this.acquire();
+
+            long now = System.nanoTime();
+            this.timings.setConnect(now - this.phaseStart);
+            this.phaseStart = now;
+
+            if (this.partner == null && !this.connectReported) {
+                this.connectReported = true;
+                this.options.getListener().onConnected(this.options, this.timings.getConnect());
+            }
+
+            // > Handshake & status request
+            this.out = ByteBuffer.wrap(MCPingCodec.getRequest(this.options));
+
+            this.state = State.WRITING_STATUS_REQUEST;
+            this.write();
+        }
+
+        private void write() throws IOException {
+            this.channel.write(this.out);
+
+            if (this.out.hasRemaining()) {
+                this.key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+
+            this.state = this.state == State.WRITING_STATUS_REQUEST ? State.READING_STATUS : State.READING_PONG;
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.readTimeout);
+            this.key.interestOps(SelectionKey.OP_READ);
+        }
+
+        private void read() throws IOException {
+            int read = this.channel.read(this.in);
+            MCPingUtil.io(read == -1, "Server prematurely ended stream.");
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.readTimeout);
+
+            int frame = frameLength(this.in, this.options.getMaxResponseBytes());
+
+            if (frame == -1) {
+                if (!this.in.hasRemaining()) {
+                    this.in = grow(this.in, this.in.capacity() * 2);
+                }
+                return;
+            }
+
+            if (this.in.position() < frame) {
+                if (this.in.capacity() < frame) {
+                    this.in = grow(this.in, frame);
+                }
+                return;
+            }
+
+            this.in.flip();
+            MCPingUtil.readVarInt(this.in); // Size
+            int id = MCPingUtil.readVarInt(this.in);
+
+            if (this.state == State.READING_STATUS) {
+
+                // < Status response
+                MCPingUtil.io(id != MCPingUtil.PACKET_STATUSREQUEST, "Server returned invalid packet.");
+
+                int length = MCPingUtil.readVarInt(this.in);
+                MCPingUtil.io(length == 0, "Server returned unexpected value.");
+                // Bytes past the frame belong to the next packet
+                MCPingUtil.io(length < 0 || length > frame - this.in.position(), "Server returned invalid packet.");
+
+                long now = System.nanoTime();
+                this.timings.setStatus(now - this.phaseStart);
+
+                this.response = MCPing.decodeResponse(this.in.array(), this.in.position(), length,
+                        MCPingCodec.getCharset(this.options), this.options.getFields());
+                this.in.position(frame);
+                this.in.compact();
+
+                this.phaseStart = System.nanoTime();
+                this.timings.setDecode(this.phaseStart - now);
+
+                if (this.partner == null && !this.statusReported) {
+                    this.statusReported = true;
+                    this.options.getListener().onStatus(this.options, this.timings.getStatus());
+                }
+
+                // > Ping
+                this.out = ByteBuffer.allocate(MCPingCodec.PING_SIZE);
+                MCPingCodec.writePing(this.out, this.phaseStart);
+                this.out.flip();
+
+                this.state = State.WRITING_PING;
+                this.write();
+
+            } else {
+
+                // < Ping
+                MCPingUtil.io(id != MCPingUtil.PACKET_PING, "Server returned invalid packet.");
+                this.timings.setPong(System.nanoTime() - this.phaseStart);
+                this.state = State.DONE;
+
+            }
+        }
+
+        private void close() {
+            if (this.channel != null) {
+                this.attempts.add(this.channel);
+            }
+
+            for (SocketChannel channel : this.attempts) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+
+            this.attempts.clear();
+
+            if (this.in != null) {
+                MCPingClient.this.release(this.in);
+                this.in = null;
+            }
+        }
+
+    }
+
+    /**
+     * @param max - largest packet accepted, see {@link MCPingOptions#getMaxResponseBytes()}
+     * @return the total size of the first frame in the buffer (length prefix included), or -1 if
+     *         the length prefix has not been fully received yet
+     */
+    private static int frameLength(final ByteBuffer buffer, final int max) throws IOException {
+        int value = 0;
+
+        for (int i = 0; i < buffer.position(); i++) {
+            byte b = buffer.get(i);
+            value |= (b & 0x7F) << i * 7;
+
+            if ((b & 0x80) == 0) {
+                MCPingUtil.io(value < 0 || value > max, "Server returned a packet larger than maxResponseBytes.");
+                return i + 1 + value;
+            }
+
+            MCPingUtil.io(i == 4, "VarInt too big");
+        }
+
+        return -1;
+    }
+
+    private static ByteBuffer grow(final ByteBuffer buffer, final int capacity) {
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+
+}
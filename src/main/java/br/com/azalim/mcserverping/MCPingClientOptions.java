@@ -0,0 +1,35 @@
+package br.com.azalim.mcserverping;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Storage class for {@link MCPingClient} options.
+ */
+@Builder
+public class MCPingClientOptions {
+
+    /**
+     * @return Maximum number of connections the client keeps open at once
+     */
+    @Getter
+    @Builder.Default
+    private int maxInFlight = 1024;
+
+    /**
+     * @return Number of threads resolving SRV records and hostnames ahead of the connect stage
+     */
+    @Getter
+    @Builder.Default
+    private int resolverThreads = 16;
+
+    /**
+     * @return Whether a second attempt is started for a ping that is slower than the
+     *         {@link MCPingOptions#getTimeoutEstimator()} of its target expects, keeping whichever
+     *         answers first
+     */
+    @Getter
+    @Builder.Default
+    private boolean hedge = false;
+
+}
@@ -0,0 +1,135 @@
+package br.com.azalim.mcserverping;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Encodes the packets {@link MCPing} and {@link MCPingClient} send.
+ * <p>
+ * The handshake only depends on the hostname, port and protocol version, so it is encoded once,
+ * together with the status request that always follows it, and reused by every later ping. The
+ * encoded bytes are remembered on the {@link MCPingOptions} instance and in a shared LRU cache,
+ * so neither reused nor rebuilt options re-encode the handshake.
+ */
+final class MCPingCodec {
+
+    /**
+     * Size of the ping packet, length prefix included.
+     */
+    static final int PING_SIZE = 10;
+
+    /**
+     * Size of the status request packet that ends {@link #getRequest(MCPingOptions)}, length prefix
+     * included. Writing the request without it sends the handshake alone.
+     */
+    static final int STATUS_REQUEST_SIZE = 2;
+
+    private static final int CACHE_SIZE = 4096;
+
+    private static final Map<String, byte[]> REQUESTS = new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, byte[]> eldest) {
+            return this.size() > CACHE_SIZE;
+        }
+
+    };
+
+    private MCPingCodec() {
+    }
+
+    /**
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @return the framed handshake followed by the framed status request; must not be modified
+     */
+    static byte[] getRequest(final MCPingOptions options) {
+
+        byte[] request = options.request.get();
+
+        if (request != null) {
+            return request;
+        }
+
+        String key = options.getHostname() + ':' + options.getPort() + ':' + options.getProtocolVersion();
+
+        synchronized (REQUESTS) {
+            request = REQUESTS.get(key);
+        }
+
+        if (request == null) {
+            request = encodeRequest(options);
+
+            synchronized (REQUESTS) {
+                REQUESTS.put(key, request);
+            }
+        }
+
+        options.request.set(request);
+        return request;
+    }
+
+    /**
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @return the charset named by {@link MCPingOptions#getCharset()}, looked up once per options
+     *         instance
+     */
+    static Charset getCharset(final MCPingOptions options) {
+
+        Charset charset = options.resolvedCharset.get();
+
+        if (charset == null) {
+            charset = StandardCharsets.UTF_8.name().equals(options.getCharset())
+                    ? StandardCharsets.UTF_8
+                    : Charset.forName(options.getCharset());
+            options.resolvedCharset.set(charset);
+        }
+
+        return charset;
+    }
+
+    /**
+     * Writes a framed ping packet at the buffer's current position.
+     *
+     * @param out - buffer with at least {@link #PING_SIZE} bytes remaining
+     * @param payload - the value the server has to echo back
+     */
+    static void writePing(final ByteBuffer out, final long payload) {
+        out.put((byte) 0x09); // Size of packet
+        out.put(MCPingUtil.PACKET_PING);
+        out.putLong(payload);
+    }
+
+    private static byte[] encodeRequest(final MCPingOptions options) {
+
+        byte[] hostname = options.getHostname().getBytes(StandardCharsets.UTF_8);
+
+        int handshakeSize = 1
+                + MCPingUtil.getVarIntSize(options.getProtocolVersion())
+                + MCPingUtil.getVarIntSize(hostname.length) + hostname.length
+                + 2
+                + MCPingUtil.getVarIntSize(MCPingUtil.STATUS_HANDSHAKE);
+
+        ByteBuffer request = ByteBuffer.allocate(MCPingUtil.getVarIntSize(handshakeSize) + handshakeSize + 2);
+
+        // > Handshake
+        MCPingUtil.writeVarInt(request, handshakeSize);
+        request.put(MCPingUtil.PACKET_HANDSHAKE);
+        MCPingUtil.writeVarInt(request, options.getProtocolVersion());
+        MCPingUtil.writeVarInt(request, hostname.length);
+        request.put(hostname);
+        request.putShort((short) options.getPort());
+        MCPingUtil.writeVarInt(request, MCPingUtil.STATUS_HANDSHAKE);
+
+        // > Status request
+        request.put((byte) 0x01); // Size of packet
+        request.put(MCPingUtil.PACKET_STATUSREQUEST);
+
+        return request.array();
+    }
+
+}
@@ -0,0 +1,238 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves and connects to every address of a target, so one dead address does not cost a whole
+ * connect timeout.
+ * <p>
+ * Addresses are listed in the order of the SRV targets returned by
+ * {@link MCPingResolver#resolveAll(String, int)}. The addresses of each SRV target alternate
+ * between IPv6 and IPv4 per RFC 8305, starting with the family the system resolver put first.
+ * Connection attempts are then raced: a new attempt starts every
+ * {@link MCPingOptions#getConnectAttemptDelay()} milliseconds, or as soon as the previous one
+ * fails, and the first connection established wins. The last attempt, when no other one is still
+ * pending, connects in blocking mode, so a target with a single address never opens a selector.
+ */
+final class MCPingConnector {
+
+    private MCPingConnector() {
+    }
+
+    /**
+     * Resolves the addresses to connect to, in the order they should be tried.
+     *
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @return the resolved addresses, never empty
+     * @throws UnknownHostException if none of the SRV targets resolved
+     * @throws IOException the cause of an {@link UncheckedIOException} thrown by the resolver
+     */
+    static List<InetSocketAddress> resolve(final MCPingOptions options) throws IOException {
+
+        List<InetSocketAddress> targets;
+
+        try {
+            targets = options.getResolver().resolveAll(options.getHostname(), options.getPort());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        UnknownHostException failure = null;
+
+        for (InetSocketAddress target : targets) {
+            InetAddress[] resolved;
+
+            try {
+                resolved = InetAddress.getAllByName(target.getHostString());
+            } catch (UnknownHostException e) {
+                failure = e;
+                continue;
+            }
+
+            interleave(resolved, target.getPort(), addresses);
+        }
+
+        if (addresses.isEmpty()) {
+            throw failure != null ? failure : new UnknownHostException(options.getHostname());
+        }
+
+        return addresses;
+    }
+
+    /**
+     * Connects to the first address that accepts a connection.
+     *
+     * @param addresses - addresses in the order they should be tried
+     * @param timeout - time allowed for the whole race in milliseconds, 0 for no limit
+     * @param attemptDelay - time before starting the next attempt in milliseconds
+     * @return the connected channel, in blocking mode
+     * @throws IOException the failure of the last attempt if none succeeded, or a
+     *         {@link SocketTimeoutException} if the timeout elapsed first
+     */
+    static SocketChannel connect(final List<InetSocketAddress> addresses, final int timeout,
+            final int attemptDelay) throws IOException {
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+        long nextAttempt = start;
+        int next = 0;
+        int open = 0;
+
+        SocketChannel connected = null;
+        IOException failure = null;
+
+        Selector selector = null;
+
+        try {
+            while (connected == null) {
+                long now = System.nanoTime();
+
+                if (timeout > 0 && now - deadline >= 0) {
+                    throw new SocketTimeoutException("Connect timed out.");
+                }
+
+                if (next < addresses.size() && (open == 0 || now - nextAttempt >= 0)) {
+                    InetSocketAddress address = addresses.get(next++);
+
+                    // Nothing left to race
+                    if (open == 0 && next == addresses.size()) {
+                        return connect(address, timeout > 0 ? deadline - now : 0);
+                    }
+
+                    SocketChannel channel = SocketChannel.open();
+
+                    try {
+                        channel.configureBlocking(false);
+
+                        if (channel.connect(address)) {
+                            connected = channel;
+                        } else {
+                            if (selector == null) {
+                                selector = Selector.open();
+                            }
+
+                            channel.register(selector, SelectionKey.OP_CONNECT);
+                            open++;
+                        }
+                    } catch (IOException e) {
+                        channel.close();
+                        failure = e;
+                    }
+
+                    nextAttempt = now + TimeUnit.MILLISECONDS.toNanos(attemptDelay);
+                    continue;
+                }
+
+                if (open == 0) {
+                    throw failure;
+                }
+
+                long wait = timeout > 0 ? deadline - now : Long.MAX_VALUE;
+
+                if (next < addresses.size()) {
+                    wait = Math.min(wait, nextAttempt - now);
+                }
+
+                selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+
+                for (SelectionKey key : selector.selectedKeys()) {
+                    SocketChannel channel = (SocketChannel) key.channel();
+
+                    try {
+                        if (channel.finishConnect()) {
+                            key.cancel();
+                            connected = channel;
+                            break;
+                        }
+                    } catch (IOException e) {
+                        key.cancel();
+                        channel.close();
+                        failure = e;
+                        open--;
+
+                        // The next address does not wait for the delay when an attempt fails
+                        nextAttempt = now;
+                    }
+                }
+
+                selector.selectedKeys().clear();
+            }
+        } finally {
+            if (selector != null) {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.channel() != connected) {
+                        key.channel().close();
+                    }
+                }
+
+                selector.close();
+            }
+        }
+
+        connected.configureBlocking(true);
+        return connected;
+    }
+
+    /**
+     * Connects to a single address in blocking mode.
+     *
+     * @param address - address to connect to
+     * @param remaining - time allowed in nanoseconds, 0 for no limit
+     * @return the connected channel, in blocking mode
+     * @throws IOException if the connection failed or timed out
+     */
+    private static SocketChannel connect(final InetSocketAddress address, final long remaining) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+
+        try {
+            int timeout = remaining == 0 ? 0 : (int) Math.min(Integer.MAX_VALUE,
+                    Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            channel.socket().connect(address, timeout);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Alternates the address families of a host, starting with the family of its first address.
+     */
+    static void interleave(final InetAddress[] resolved, final int port, final List<InetSocketAddress> addresses) {
+
+        List<InetAddress> preferred = new ArrayList<>(resolved.length);
+        List<InetAddress> other = new ArrayList<>(resolved.length);
+
+        for (InetAddress address : resolved) {
+            if ((address instanceof Inet6Address) == (resolved[0] instanceof Inet6Address)) {
+                preferred.add(address);
+            } else {
+                other.add(address);
+            }
+        }
+
+        for (int i = 0; i < Math.max(preferred.size(), other.size()); i++) {
+            if (i < preferred.size()) {
+                addresses.add(new InetSocketAddress(preferred.get(i), port));
+            }
+
+            if (i < other.size()) {
+                addresses.add(new InetSocketAddress(other.get(i), port));
+            }
+        }
+    }
+
+}
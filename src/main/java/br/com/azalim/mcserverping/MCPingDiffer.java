@@ -0,0 +1,206 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import br.com.azalim.mcserverping.MCPingChange.Type;
+import br.com.azalim.mcserverping.MCPingResponse.Players;
+
+/**
+ * Turns successive observations of targets into {@link MCPingChange}s, so consumers only see
+ * what changed between two polls instead of every response.
+ * <p>
+ * The last response of each target is kept in memory. A target goes {@link Type#OFFLINE} after
+ * a configurable number of consecutive failures, and {@link Type#ONLINE} again on its next
+ * response, followed by the changes since its last known response.
+ * <p>
+ * As a {@link MCPingSubscriber}, it can be subscribed to a {@link MCPingScheduler} directly, and
+ * hands the changes to its listener. {@link #update(MCPingTarget, MCPingResponse)} and
+ * {@link #fail(MCPingTarget, MCPingFailure)} can be called directly otherwise.
+ */
+public class MCPingDiffer implements MCPingSubscriber {
+
+    private final int offlineAfter;
+    private final Consumer<MCPingChange> listener;
+    private final Map<MCPingTarget, State> states = new ConcurrentHashMap<>();
+
+    /**
+     * @param listener - receives the changes of the subscribed results
+     */
+    public MCPingDiffer(final Consumer<MCPingChange> listener) {
+        this(1, listener);
+    }
+
+    /**
+     * @param offlineAfter - number of consecutive failures after which a target is offline
+     * @param listener - receives the changes of the subscribed results
+     */
+    public MCPingDiffer(final int offlineAfter, final Consumer<MCPingChange> listener) {
+        if (offlineAfter <= 0) {
+            throw new IllegalArgumentException("offlineAfter must be positive.");
+        }
+
+        this.offlineAfter = offlineAfter;
+        this.listener = Objects.requireNonNull(listener, "Listener cannot be null.");
+    }
+
+    @Override
+    public void onResponse(final MCPingTarget target, final MCPingResponse response) {
+        this.update(target, response).forEach(this.listener);
+    }
+
+    @Override
+    public void onFailure(final MCPingTarget target, final MCPingFailure failure, final IOException cause) {
+        this.fail(target, failure).forEach(this.listener);
+    }
+
+    /**
+     * Records a response of a target.
+     *
+     * @param target - target that answered
+     * @param response - its response
+     * @return the changes since the previous observation of the target
+     */
+    public List<MCPingChange> update(final MCPingTarget target, final MCPingResponse response) {
+
+        List<MCPingChange> changes = new ArrayList<>();
+
+        this.states.compute(target, (key, state) -> {
+            if (state == null) {
+                state = new State();
+            }
+
+            if (!state.online) {
+                changes.add(new MCPingChange(target, Type.ONLINE, response, 0, null));
+            }
+
+            if (state.last != null) {
+                changes.addAll(diff(target, state.last, response));
+            }
+
+            state.last = response;
+            state.online = true;
+            state.failures = 0;
+            return state;
+        });
+
+        return changes;
+    }
+
+    /**
+     * Records a failed ping of a target.
+     *
+     * @param target - target that did not answer
+     * @param failure - type of the failure
+     * @return a {@link Type#OFFLINE} change if the target was online and just went offline,
+     *         nothing otherwise, in particular for a target that never answered
+     */
+    public List<MCPingChange> fail(final MCPingTarget target, final MCPingFailure failure) {
+
+        List<MCPingChange> changes = new ArrayList<>(1);
+
+        this.states.computeIfPresent(target, (key, state) -> {
+            // Only a target that was online can go offline
+            if (++state.failures == this.offlineAfter && state.online) {
+                state.online = false;
+                changes.add(new MCPingChange(target, Type.OFFLINE, null, 0, failure));
+            }
+
+            return state;
+        });
+
+        return changes;
+    }
+
+    /**
+     * @param target - a target
+     * @return the last response of the target, null if it never answered
+     */
+    public MCPingResponse getLast(final MCPingTarget target) {
+        State state = this.states.get(target);
+        return state == null ? null : state.last;
+    }
+
+    /**
+     * @param target - a target
+     * @return whether the target answered its last pings
+     */
+    public boolean isOnline(final MCPingTarget target) {
+        State state = this.states.get(target);
+        return state != null && state.online;
+    }
+
+    /**
+     * Drops what is known about a target, so its next observation is reported as a first one.
+     *
+     * @param target - a target
+     */
+    public void forget(final MCPingTarget target) {
+        this.states.remove(target);
+    }
+
+    /**
+     * Compares two responses of a target.
+     *
+     * @param target - target of the responses
+     * @param previous - the older response
+     * @param current - the newer response
+     * @return the changes from the older to the newer response, in {@link Type} order
+     */
+    public static List<MCPingChange> diff(final MCPingTarget target, final MCPingResponse previous,
+            final MCPingResponse current) {
+
+        if (previous.equals(current)) {
+            return Collections.emptyList();
+        }
+
+        List<MCPingChange> changes = new ArrayList<>(2);
+
+        Players before = previous.getPlayers();
+        Players after = current.getPlayers();
+
+        int online = (after == null ? 0 : after.getOnline()) - (before == null ? 0 : before.getOnline());
+        int max = (after == null ? 0 : after.getMax()) - (before == null ? 0 : before.getMax());
+
+        if (online != 0) {
+            changes.add(new MCPingChange(target, Type.PLAYERS_ONLINE, current, online, null));
+        }
+
+        if (max != 0) {
+            changes.add(new MCPingChange(target, Type.PLAYERS_MAX, current, max, null));
+        }
+
+        if (!Objects.equals(before == null ? null : before.getSample(), after == null ? null : after.getSample())) {
+            changes.add(new MCPingChange(target, Type.PLAYER_SAMPLE, current, 0, null));
+        }
+
+        if (!Objects.equals(previous.getDescription(), current.getDescription())) {
+            changes.add(new MCPingChange(target, Type.DESCRIPTION, current, 0, null));
+        }
+
+        if (!Objects.equals(previous.getVersion(), current.getVersion())) {
+            changes.add(new MCPingChange(target, Type.VERSION, current, 0, null));
+        }
+
+        if (previous.getFaviconHash() != current.getFaviconHash()) {
+            changes.add(new MCPingChange(target, Type.FAVICON, current, 0, null));
+        }
+
+        return changes;
+    }
+
+    private static final class State {
+
+        private MCPingResponse last;
+        private boolean online;
+        private int failures;
+
+    }
+
+}
@@ -0,0 +1,31 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+
+import lombok.Getter;
+
+/**
+ * {@link IOException} raised by {@link MCPing} itself, carrying the {@link MCPingFailure} it
+ * stands for.
+ */
+public class MCPingException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @return Kind of failure
+     */
+    @Getter
+    private final MCPingFailure failure;
+
+    public MCPingException(final MCPingFailure failure, final String message) {
+        super(message);
+        this.failure = failure;
+    }
+
+    public MCPingException(final MCPingFailure failure, final String message, final Throwable cause) {
+        super(message, cause);
+        this.failure = failure;
+    }
+
+}
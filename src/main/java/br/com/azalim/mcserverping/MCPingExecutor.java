@@ -0,0 +1,48 @@
+package br.com.azalim.mcserverping;
+
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the blocking pings of {@link MCPing#pingAll(java.util.Collection, int)}.
+ * <p>
+ * This implementation uses a pool of platform threads sized to the concurrency cap. The jar is
+ * multi-release: on Java 21 and newer it is replaced by the one in {@code src/main/java21}, which
+ * runs every ping on its own virtual thread.
+ */
+final class MCPingExecutor {
+
+    private MCPingExecutor() {
+    }
+
+    /**
+     * Starts every task without waiting for them to finish.
+     *
+     * @param tasks - tasks to run
+     * @param maxConcurrency - maximum number of tasks running at once
+     */
+    static void executeAll(final List<Runnable> tasks, final int maxConcurrency) {
+
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        int threads = Math.min(tasks.size(), maxConcurrency);
+        AtomicInteger threadId = new AtomicInteger();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(tasks), runnable -> {
+                    Thread thread = new Thread(runnable, "MCPing-" + threadId.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        // The queue is filled upfront, so the threads have to be started explicitly
+        executor.prestartAllCoreThreads();
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,63 @@
+package br.com.azalim.mcserverping;
+
+import java.io.EOFException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+
+/**
+ * Kinds of failure reported to {@link MCPingListener#onFailure}.
+ */
+public enum MCPingFailure {
+
+    /**
+     * The hostname could not be resolved
+     */
+    RESOLVE,
+
+    /**
+     * The connection was refused or the host is unreachable
+     */
+    CONNECT,
+
+    /**
+     * Connecting or reading took longer than the configured timeout
+     */
+    TIMEOUT,
+
+    /**
+     * The server closed the connection early or sent an unexpected packet
+     */
+    PROTOCOL,
+
+    /**
+     * The status response payload could not be decoded
+     */
+    DECODE,
+
+    /**
+     * Any other I/O error
+     */
+    IO;
+
+    /**
+     * @param cause - the error a ping failed with
+     * @return the {@link MCPingFailure} matching the error
+     */
+    public static MCPingFailure of(final Throwable cause) {
+        if (cause instanceof MCPingException) {
+            return ((MCPingException) cause).getFailure();
+        } else if (cause instanceof SocketTimeoutException) {
+            return TIMEOUT;
+        } else if (cause instanceof UnknownHostException) {
+            return RESOLVE;
+        } else if (cause instanceof ConnectException || cause instanceof NoRouteToHostException) {
+            return CONNECT;
+        } else if (cause instanceof EOFException) {
+            return PROTOCOL;
+        }
+        return IO;
+    }
+
+}
@@ -0,0 +1,221 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.stream.JsonReader;
+
+/**
+ * Locates, decodes and hashes the favicon of a status payload without going through a JSON parser.
+ */
+final class MCPingFavicon {
+
+    private static final byte[] KEY = "favicon".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private MCPingFavicon() {
+    }
+
+    /**
+     * @param charset - charset of the payload
+     * @return whether the payload can be scanned byte by byte for JSON structure
+     */
+    static boolean isScannable(final Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+                || charset.equals(StandardCharsets.US_ASCII)
+                || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Finds the string value of the top-level {@code favicon} field.
+     *
+     * @param data - buffer holding the status response payload
+     * @param offset - offset of the payload in the buffer
+     * @param length - length of the payload
+     * @return the start offset of the value in the upper 32 bits and its end offset (exclusive) in
+     *         the lower 32 bits, quotes excluded, or -1 if there is no favicon
+     */
+    static long locate(final byte[] data, final int offset, final int length) {
+
+        int end = offset + length;
+        int depth = 0;
+        boolean key = false;
+        boolean match = false;
+
+        for (int i = offset; i < end; i++) {
+            switch (data[i]) {
+                case '{':
+                    key = ++depth == 1;
+                    break;
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    depth--;
+                    break;
+                case ',':
+                    key = depth == 1;
+                    match = false;
+                    break;
+                case ':':
+                    key = false;
+                    break;
+                case '"':
+                    int start = i + 1;
+                    int j = start;
+
+                    while (j < end && data[j] != '"') {
+                        j += data[j] == '\\' ? 2 : 1;
+                    }
+
+                    if (depth == 1) {
+                        if (key) {
+                            match = j - start == KEY.length && regionMatches(data, start);
+                        } else if (match) {
+                            return (long) start << 32 | Math.min(j, end);
+                        }
+                    }
+
+                    i = j;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @param data - the favicon as it appeared in the payload, JSON escapes included
+     * @param charset - charset of the payload
+     * @return the unescaped favicon
+     */
+    static String decode(final byte[] data, final Charset charset) {
+
+        String raw = new String(data, charset);
+
+        if (raw.indexOf('\\') == -1) {
+            return raw;
+        }
+
+        try (JsonReader reader = new JsonReader(new StringReader('"' + raw + '"'))) {
+            return reader.nextString();
+        } catch (IOException e) {
+            return raw;
+        }
+    }
+
+    /**
+     * @param data - bytes to hash
+     * @return 64-bit FNV-1a hash of the bytes, never 0
+     */
+    static long hash(final byte[] data) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (byte b : data) {
+            hash ^= b & 0xFF;
+            hash *= FNV_PRIME;
+        }
+
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Hashes an escaped favicon as if it were unescaped and encoded in UTF-8, so the result
+     * matches {@link #hash(byte[])} of the decoded favicon.
+     *
+     * @param data - the favicon as it appeared in a UTF-8 or ASCII payload, JSON escapes included
+     * @return 64-bit FNV-1a hash of the unescaped favicon, never 0
+     */
+    static long hashEscaped(final byte[] data) {
+        long hash = FNV_OFFSET_BASIS;
+
+        for (int i = 0; i < data.length; i++) {
+            int b = data[i] & 0xFF;
+
+            if (b == '\\' && i + 1 < data.length) {
+                int c = data[++i];
+
+                switch (c) {
+                    case 'b':
+                        b = '\b';
+                        break;
+                    case 'f':
+                        b = '\f';
+                        break;
+                    case 'n':
+                        b = '\n';
+                        break;
+                    case 'r':
+                        b = '\r';
+                        break;
+                    case 't':
+                        b = '\t';
+                        break;
+                    case 'u':
+                        int unit = i + 4 < data.length ? parseHex(data, i + 1) : -1;
+
+                        if (unit != -1) {
+                            i += 4;
+
+                            if (unit >= 0x80) {
+                                // Multi-byte code units, rare in base64 favicons, are hashed as UTF-8
+                                for (byte encoded : String.valueOf((char) unit).getBytes(StandardCharsets.UTF_8)) {
+                                    hash ^= encoded & 0xFF;
+                                    hash *= FNV_PRIME;
+                                }
+                                continue;
+                            }
+
+                            b = unit;
+                        } else {
+                            b = c;
+                        }
+                        break;
+                    default:
+                        b = c;
+                }
+            }
+
+            hash ^= b;
+            hash *= FNV_PRIME;
+        }
+
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * @return the value of the 4 hex digits at the offset, or -1 if they are not hex digits
+     */
+    private static int parseHex(final byte[] data, final int offset) {
+        int value = 0;
+
+        for (int i = offset; i < offset + 4; i++) {
+            int digit = Character.digit(data[i], 16);
+
+            if (digit == -1 || data[i] > 'f') {
+                return -1;
+            }
+
+            value = value << 4 | digit;
+        }
+
+        return value;
+    }
+
+    private static boolean regionMatches(final byte[] data, final int start) {
+        for (int i = 0; i < KEY.length; i++) {
+            if (data[start + i] != KEY[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
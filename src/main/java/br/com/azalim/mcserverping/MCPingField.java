@@ -0,0 +1,36 @@
+package br.com.azalim.mcserverping;
+
+/**
+ * Parts of a status response that can be selected through {@link MCPingOptions#getFields()}.
+ * Fields that are not selected are skipped while decoding and left null in the
+ * {@link MCPingResponse}.
+ */
+public enum MCPingField {
+
+    /**
+     * {@link MCPingResponse#getDescription()}
+     */
+    DESCRIPTION,
+
+    /**
+     * {@link MCPingResponse#getPlayers()}, without the sample unless {@link #PLAYER_SAMPLE} is
+     * selected too
+     */
+    PLAYERS,
+
+    /**
+     * {@link MCPingResponse.Players#getSample()}
+     */
+    PLAYER_SAMPLE,
+
+    /**
+     * {@link MCPingResponse#getVersion()}
+     */
+    VERSION,
+
+    /**
+     * {@link MCPingResponse#getFavicon()}, kept as raw bytes until it is first accessed
+     */
+    FAVICON
+
+}
@@ -0,0 +1,1221 @@
+package br.com.azalim.mcserverping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Append-only store of ping samples, kept in memory-mapped segment files.
+ * <p>
+ * Each sample is a fixed 36-byte record: timestamp, target, online and maximum player counts,
+ * protocol version, round trip time, and the description and version name. Strings are interned
+ * once in a dictionary file and referenced by id, so a record costs the same whatever the size
+ * of the MOTD.
+ * <p>
+ * Records are appended in timestamp order to the current segment, which is rolled over when it is
+ * full or spans {@link MCPingHistoryStoreOptions#getSegmentDuration()}. Range scans skip whole
+ * segments by time and binary search the first record within a segment. Each segment also lists
+ * the records of every target, in memory while it is appended to and in an index file once it is
+ * rolled over, so the scans and downsampling of one target only read that target's records.
+ * <p>
+ * Retention deletes whole segments once all their records are older than
+ * {@link MCPingHistoryStoreOptions#getRetention()}. Strings no segment refers to anymore are then
+ * dropped from the dictionary, on disk and in memory, the first time segments are deleted and
+ * then whenever it has doubled since it was last compacted.
+ * <p>
+ * Appends are serialized, scans can run concurrently with them. Data reaches the disk when the
+ * operating system flushes the mapped pages, or on {@link #sync()} and {@link #close()}. The
+ * dictionary is forced to disk before a segment is indexed, and the records of segments without
+ * an index are checked when the store is opened: after a crash, a segment is cut before its first
+ * record referring to a string that did not reach the disk.
+ */
+public class MCPingHistoryStore implements Closeable {
+
+    /**
+     * Size of a record in bytes.
+     */
+    public static final int RECORD_SIZE = 36;
+
+    private static final int MAGIC = 0x4D435048; // MCPH
+    private static final int FORMAT = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int COUNT_OFFSET = 8;
+
+    private static final int INDEX_MAGIC = 0x4D435049; // MCPI
+    private static final int INDEX_FORMAT = 1;
+    private static final int INDEX_HEADER_SIZE = 20;
+    private static final int INDEX_ENTRY_SIZE = 12;
+
+    private static final int STRINGS_MAGIC = 0x4D435053; // MCPS
+    private static final int STRINGS_FORMAT = 1;
+    private static final int STRINGS_HEADER_SIZE = 8;
+
+    /**
+     * Number of strings below which the dictionary is never compacted.
+     */
+    private static final int MIN_COMPACTION_SIZE = 1024;
+
+    private static final int NONE = -1;
+    private static final int OFFLINE = -1;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String STRINGS_FILE = "strings.dat";
+
+    private final Path directory;
+    private final int segmentRecords;
+    private final long segmentDuration;
+    private final long retention;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Map<Integer, MCPingTarget> targets = new ConcurrentHashMap<>();
+
+    private final Map<Integer, String> strings = new ConcurrentHashMap<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+    private FileChannel stringsChannel;
+    private int nextId;
+
+    /**
+     * Size of the dictionary after the last compaction, zero until the first one.
+     */
+    private int compactedSize;
+
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public MCPingHistoryStore(final Path directory) throws IOException {
+        this(directory, MCPingHistoryStoreOptions.builder().build());
+    }
+
+    public MCPingHistoryStore(final Path directory, final MCPingHistoryStoreOptions options) throws IOException {
+        if (options.getSegmentRecords() <= 0
+                || (long) options.getSegmentRecords() * RECORD_SIZE + HEADER_SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segmentRecords must be positive and fit a 2 GB segment.");
+        }
+
+        if (options.getSegmentDuration() <= 0) {
+            throw new IllegalArgumentException("segmentDuration must be positive.");
+        }
+
+        this.directory = Files.createDirectories(directory);
+        this.segmentRecords = options.getSegmentRecords();
+        this.segmentDuration = options.getSegmentDuration();
+        this.retention = options.getRetention();
+
+        this.stringsChannel = FileChannel.open(directory.resolve(STRINGS_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.loadStrings();
+        this.loadSegments();
+    }
+
+    /**
+     * Appends a sample of a target that answered, timestamped now.
+     *
+     * @param target - target that was pinged
+     * @param response - its response
+     * @throws IOException if a segment cannot be created
+     */
+    public synchronized void append(final MCPingTarget target, final MCPingResponse response) throws IOException {
+        // The clock can step back, records have to stay in order
+        this.append(Math.max(System.currentTimeMillis(), this.lastTimestamp), target, response);
+    }
+
+    /**
+     * Appends a sample of a target that answered.
+     *
+     * @param timestamp - time of the sample in milliseconds, not before the last appended one
+     * @param target - target that was pinged
+     * @param response - its response
+     * @throws IOException if a segment cannot be created
+     */
+    public synchronized void append(final long timestamp, final MCPingTarget target, final MCPingResponse response)
+            throws IOException {
+
+        MCPingResponse.Players players = response.getPlayers();
+        MCPingResponse.Version version = response.getVersion();
+        MCPingTimings timings = response.getTimings();
+
+        long rtt = timings != null && timings.getPong() > 0
+                ? TimeUnit.NANOSECONDS.toMicros(timings.getPong())
+                : TimeUnit.MILLISECONDS.toMicros(response.getPing());
+
+        this.write(timestamp, this.intern(target.toString()),
+                players == null ? 0 : players.getOnline(),
+                players == null ? 0 : players.getMax(),
+                version == null ? 0 : version.getProtocol(),
+                (int) Math.min(rtt, Integer.MAX_VALUE),
+                this.intern(response.getDescription() == null ? null : response.getDescription().getText()),
+                this.intern(version == null ? null : version.getName()));
+    }
+
+    /**
+     * Appends a sample of a target that did not answer, timestamped now.
+     *
+     * @param target - target that was pinged
+     * @throws IOException if a segment cannot be created
+     */
+    public synchronized void appendOffline(final MCPingTarget target) throws IOException {
+        this.appendOffline(Math.max(System.currentTimeMillis(), this.lastTimestamp), target);
+    }
+
+    /**
+     * Appends a sample of a target that did not answer.
+     *
+     * @param timestamp - time of the sample in milliseconds, not before the last appended one
+     * @param target - target that was pinged
+     * @throws IOException if a segment cannot be created
+     */
+    public synchronized void appendOffline(final long timestamp, final MCPingTarget target) throws IOException {
+        this.write(timestamp, this.intern(target.toString()), OFFLINE, 0, 0, 0, NONE, NONE);
+    }
+
+    /**
+     * Visits every record of a time range, in timestamp order.
+     *
+     * @param from - start of the range in milliseconds, inclusive
+     * @param to - end of the range in milliseconds, exclusive
+     * @param consumer - receives the records
+     */
+    public void scan(final long from, final long to, final Consumer<Record> consumer) {
+        this.scan(NONE, from, to, consumer);
+    }
+
+    /**
+     * Visits the records of a target in a time range, in timestamp order. Only the records of the
+     * target are read.
+     *
+     * @param target - the target
+     * @param from - start of the range in milliseconds, inclusive
+     * @param to - end of the range in milliseconds, exclusive
+     * @param consumer - receives the records
+     */
+    public void scan(final MCPingTarget target, final long from, final long to, final Consumer<Record> consumer) {
+        Integer id;
+
+        synchronized (this) {
+            id = this.ids.get(target.toString());
+        }
+
+        if (id != null) {
+            this.scan(id, from, to, consumer);
+        }
+    }
+
+    /**
+     * Aggregates the records of a target in a time range into fixed-size time buckets.
+     *
+     * @param target - the target
+     * @param from - start of the range in milliseconds, inclusive
+     * @param to - end of the range in milliseconds, exclusive
+     * @param bucket - size of a bucket in milliseconds
+     * @return the buckets holding at least one record, in time order
+     */
+    public List<Bucket> downsample(final MCPingTarget target, final long from, final long to, final long bucket) {
+
+        if (bucket <= 0) {
+            throw new IllegalArgumentException("Bucket must be positive.");
+        }
+
+        if (to <= from) {
+            return new ArrayList<>();
+        }
+
+        long size = (to - from + bucket - 1) / bucket;
+
+        if (size > 1 << 24) {
+            throw new IllegalArgumentException("Too many buckets, use a larger bucket size.");
+        }
+
+        Bucket[] buckets = new Bucket[(int) size];
+
+        this.scan(target, from, to, record -> {
+            int index = (int) ((record.timestamp - from) / bucket);
+            Bucket aggregate = buckets[index];
+
+            if (aggregate == null) {
+                aggregate = buckets[index] = new Bucket(from + index * bucket);
+            }
+
+            aggregate.add(record);
+        });
+
+        List<Bucket> result = new ArrayList<>();
+
+        for (Bucket aggregate : buckets) {
+            if (aggregate != null) {
+                result.add(aggregate);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Deletes the segments whose records are all older than the supplied time, and compacts the
+     * dictionary if it has not been compacted since the store was opened or has doubled since. The
+     * segment being appended to is never deleted.
+     *
+     * @param timestamp - time in milliseconds
+     * @return the number of deleted segments
+     * @throws IOException if a segment file cannot be deleted or the dictionary rewritten
+     */
+    public synchronized int deleteBefore(final long timestamp) throws IOException {
+
+        int deleted = 0;
+
+        for (int i = 0; i < this.segments.size() - 1; i++) {
+            Segment segment = this.segments.get(i);
+
+            if (segment.end >= timestamp) {
+                break;
+            }
+
+            this.segments.remove(i--);
+            segment.channel.close();
+            Files.deleteIfExists(segment.path);
+            Files.deleteIfExists(indexPath(segment.path));
+            deleted++;
+        }
+
+        if (deleted > 0 && this.strings.size() >= MIN_COMPACTION_SIZE
+                && this.strings.size() > 2 * this.compactedSize) {
+            this.compactStrings();
+        }
+
+        return deleted;
+    }
+
+    /**
+     * @return Number of records in the store
+     */
+    public long getSize() {
+        long size = 0;
+
+        for (Segment segment : this.segments) {
+            size += segment.count;
+        }
+
+        return size;
+    }
+
+    /**
+     * @return Number of segment files
+     */
+    public int getSegments() {
+        return this.segments.size();
+    }
+
+    /**
+     * Forces the appended records and strings to disk.
+     *
+     * @throws IOException if the strings cannot be written
+     */
+    public synchronized void sync() throws IOException {
+        for (Segment segment : this.segments) {
+            if (!segment.buffer.isReadOnly()) {
+                segment.buffer.force();
+            }
+        }
+
+        this.stringsChannel.force(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.sync();
+
+        for (Segment segment : this.segments) {
+            segment.channel.close();
+        }
+
+        this.stringsChannel.close();
+    }
+
+    private void write(final long timestamp, final int target, final int online, final int max, final int protocol,
+            final int rtt, final int motd, final int version) throws IOException {
+
+        if (timestamp < this.lastTimestamp) {
+            throw new IllegalArgumentException("Records must be appended in timestamp order.");
+        }
+
+        Segment segment = this.segmentFor(timestamp);
+        int index = segment.count;
+        int position = HEADER_SIZE + index * RECORD_SIZE;
+
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(position, timestamp);
+        buffer.putInt(position + 8, target);
+        buffer.putInt(position + 12, online);
+        buffer.putInt(position + 16, max);
+        buffer.putInt(position + 20, protocol);
+        buffer.putInt(position + 24, rtt);
+        buffer.putInt(position + 28, motd);
+        buffer.putInt(position + 32, version);
+        buffer.putInt(COUNT_OFFSET, index + 1);
+
+        segment.live.computeIfAbsent(target, key -> new LivePostings()).add(index);
+
+        if (index == 0) {
+            segment.first = timestamp;
+        }
+
+        this.lastTimestamp = timestamp;
+        segment.end = timestamp;
+        segment.count = index + 1;
+    }
+
+    private Segment segmentFor(final long timestamp) throws IOException {
+
+        Segment last = this.segments.isEmpty() ? null : this.segments.get(this.segments.size() - 1);
+
+        if (last != null && last.count < this.segmentRecords && timestamp - last.start < this.segmentDuration) {
+            return last;
+        }
+
+        // Segments are named after their start, which has to move on even if the last one filled up
+        // within a millisecond
+        long start = last == null ? timestamp : Math.max(timestamp, last.start + 1);
+
+        if (last != null) {
+            this.seal(last);
+        }
+
+        Segment segment = Segment.create(this.directory.resolve(segmentName(start)), start, this.segmentRecords);
+        this.segments.add(segment);
+
+        if (this.retention > 0) {
+            this.deleteBefore(timestamp - this.retention);
+        }
+
+        return segment;
+    }
+
+    private void scan(final int target, final long from, final long to, final Consumer<Record> consumer) {
+
+        for (Segment segment : this.segments) {
+            int count = segment.count;
+
+            if (count == 0 || segment.first >= to || segment.end < from) {
+                continue;
+            }
+
+            MappedByteBuffer buffer = segment.buffer;
+
+            if (target == NONE) {
+                for (int i = segment.firstAtOrAfter(from, count); i < count; i++) {
+                    int position = HEADER_SIZE + i * RECORD_SIZE;
+
+                    if (buffer.getLong(position) >= to) {
+                        return;
+                    }
+
+                    consumer.accept(this.read(buffer, position));
+                }
+
+                continue;
+            }
+
+            Postings postings = segment.postings(target);
+
+            if (postings == null) {
+                continue;
+            }
+
+            for (int i = postings.firstAtOrAfter(buffer, from); i < postings.size; i++) {
+                int position = HEADER_SIZE + postings.get(i) * RECORD_SIZE;
+
+                if (buffer.getLong(position) >= to) {
+                    return;
+                }
+
+                consumer.accept(this.read(buffer, position));
+            }
+        }
+    }
+
+    private Record read(final MappedByteBuffer buffer, final int position) {
+        return new Record(buffer.getLong(position), this.target(buffer.getInt(position + 8)),
+                buffer.getInt(position + 12),
+                buffer.getInt(position + 16),
+                buffer.getInt(position + 20),
+                buffer.getInt(position + 24),
+                this.string(buffer.getInt(position + 28)),
+                this.string(buffer.getInt(position + 32)));
+    }
+
+    /**
+     * Writes the index of a segment that is no longer appended to, and drops its in-memory
+     * postings.
+     */
+    private void seal(final Segment segment) throws IOException {
+        Map<Integer, LivePostings> live = segment.live;
+
+        if (live == null) {
+            return;
+        }
+
+        // The index vouches for the records, so the strings they refer to have to be on disk first
+        this.stringsChannel.force(false);
+
+        if (!segment.buffer.isReadOnly()) {
+            segment.buffer.force();
+        }
+
+        int count = segment.count;
+        List<Integer> targets = new ArrayList<>(live.keySet());
+        Collections.sort(targets);
+
+        BitSet references = new BitSet();
+        references(segment.buffer, count, references);
+
+        ByteBuffer data = ByteBuffer.allocate(INDEX_HEADER_SIZE + targets.size() * INDEX_ENTRY_SIZE
+                + count * 4 + references.cardinality() * 4);
+        data.putInt(INDEX_MAGIC).putInt(INDEX_FORMAT).putInt(targets.size()).putInt(count)
+                .putInt(references.cardinality());
+
+        int offset = 0;
+
+        for (Integer target : targets) {
+            int size = live.get(target).size;
+            data.putInt(target).putInt(offset).putInt(size);
+            offset += size;
+        }
+
+        for (Integer target : targets) {
+            Postings postings = live.get(target).snapshot();
+
+            for (int i = 0; i < postings.size; i++) {
+                data.putInt(postings.get(i));
+            }
+        }
+
+        for (int id = references.nextSetBit(0); id >= 0; id = references.nextSetBit(id + 1)) {
+            data.putInt(id);
+        }
+
+        data.flip();
+
+        Path path = indexPath(segment.path);
+        writeAtomically(path, data);
+
+        segment.index = readIndex(path, count);
+        segment.live = null;
+    }
+
+    /**
+     * Lists the postings of a segment without an index, and cuts it before its first record
+     * referring to a string missing from the dictionary, which a crash can lose before the records.
+     */
+    private void rebuild(final Segment segment) throws IOException {
+        MappedByteBuffer buffer = segment.buffer;
+        int count = segment.count;
+
+        for (int i = 0; i < count; i++) {
+            int position = HEADER_SIZE + i * RECORD_SIZE;
+            int target = buffer.getInt(position + 8);
+
+            if (!this.strings.containsKey(target) || !this.isKnown(buffer.getInt(position + 28))
+                    || !this.isKnown(buffer.getInt(position + 32))) {
+                count = i;
+                segment.writeCount(count);
+                break;
+            }
+
+            segment.live.computeIfAbsent(target, key -> new LivePostings()).add(i);
+        }
+
+        segment.count = count;
+        segment.first = count == 0 ? segment.start : buffer.getLong(HEADER_SIZE);
+        segment.end = count == 0 ? segment.start : buffer.getLong(HEADER_SIZE + (count - 1) * RECORD_SIZE);
+    }
+
+    private boolean isKnown(final int id) {
+        return id == NONE || this.strings.containsKey(id);
+    }
+
+    /**
+     * Rewrites the dictionary with the strings the remaining segments refer to.
+     */
+    private void compactStrings() throws IOException {
+        BitSet live = new BitSet();
+
+        for (Segment segment : this.segments) {
+            MappedByteBuffer index = segment.index;
+
+            if (index != null) {
+                int start = INDEX_HEADER_SIZE + index.getInt(8) * INDEX_ENTRY_SIZE + index.getInt(12) * 4;
+
+                for (int i = 0; i < index.getInt(16); i++) {
+                    live.set(index.getInt(start + i * 4));
+                }
+            } else {
+                references(segment.buffer, segment.count, live);
+            }
+        }
+
+        this.stringsChannel.close();
+
+        try {
+            writeAtomically(this.directory.resolve(STRINGS_FILE), this.encodeStrings(live));
+        } finally {
+            this.stringsChannel = FileChannel.open(this.directory.resolve(STRINGS_FILE),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        this.strings.keySet().removeIf(id -> !live.get(id));
+        this.ids.values().removeIf(id -> !live.get(id));
+        this.targets.keySet().removeIf(id -> !live.get(id));
+        this.compactedSize = this.strings.size();
+    }
+
+    private ByteBuffer encodeStrings(final BitSet live) {
+        List<byte[]> encoded = new ArrayList<>();
+        int size = STRINGS_HEADER_SIZE;
+
+        for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+            String value = this.strings.get(id);
+            byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            size += bytes == null ? 0 : 8 + bytes.length;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(size);
+        data.putInt(STRINGS_MAGIC).putInt(STRINGS_FORMAT);
+
+        int index = 0;
+
+        for (int id = live.nextSetBit(0); id >= 0; id = live.nextSetBit(id + 1)) {
+            byte[] bytes = encoded.get(index++);
+
+            if (bytes != null) {
+                data.putInt(id).putInt(bytes.length).put(bytes);
+            }
+        }
+
+        data.flip();
+        return data;
+    }
+
+    /**
+     * Adds the ids of the strings the records of a segment refer to.
+     */
+    private static void references(final MappedByteBuffer buffer, final int count, final BitSet references) {
+        for (int i = 0; i < count; i++) {
+            int position = HEADER_SIZE + i * RECORD_SIZE;
+            references.set(buffer.getInt(position + 8));
+
+            for (int offset = 28; offset <= 32; offset += 4) {
+                int id = buffer.getInt(position + offset);
+
+                if (id != NONE) {
+                    references.set(id);
+                }
+            }
+        }
+    }
+
+    private int intern(final String value) throws IOException {
+
+        if (value == null) {
+            return NONE;
+        }
+
+        Integer existing = this.ids.get(value);
+
+        if (existing != null) {
+            return existing;
+        }
+
+        int id = this.nextId;
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer entry = ByteBuffer.allocate(8 + bytes.length);
+        entry.putInt(id).putInt(bytes.length).put(bytes).flip();
+
+        long position = this.stringsChannel.size();
+
+        while (entry.hasRemaining()) {
+            position += this.stringsChannel.write(entry, position);
+        }
+
+        this.nextId = id + 1;
+        this.strings.put(id, value);
+        this.ids.put(value, id);
+        return id;
+    }
+
+    private String string(final int id) {
+        return id == NONE ? null : this.strings.get(id);
+    }
+
+    private MCPingTarget target(final int id) {
+        String target = this.string(id);
+
+        // Only a segment deleted during the scan can refer to a string compacted away
+        if (target == null) {
+            return null;
+        }
+
+        return this.targets.computeIfAbsent(id, key -> {
+            int separator = target.lastIndexOf(':');
+            String hostname = target.substring(0, separator);
+
+            if (hostname.startsWith("[")) {
+                hostname = hostname.substring(1, hostname.length() - 1);
+            }
+
+            return MCPingTarget.of(hostname, Integer.parseInt(target.substring(separator + 1)));
+        });
+    }
+
+    private void loadStrings() throws IOException {
+
+        long size = this.stringsChannel.size();
+
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(STRINGS_HEADER_SIZE);
+            header.putInt(STRINGS_MAGIC).putInt(STRINGS_FORMAT).flip();
+
+            while (header.hasRemaining()) {
+                this.stringsChannel.write(header, header.position());
+            }
+
+            return;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+
+        while (data.hasRemaining() && this.stringsChannel.read(data, data.position()) != -1) {
+            // Read the whole dictionary
+        }
+
+        data.flip();
+
+        if (size < STRINGS_HEADER_SIZE || data.getInt(0) != STRINGS_MAGIC || data.getInt(4) != STRINGS_FORMAT) {
+            throw new IOException("Not a history dictionary: " + this.directory.resolve(STRINGS_FILE));
+        }
+
+        data.position(STRINGS_HEADER_SIZE);
+
+        while (data.remaining() >= 8) {
+            int id = data.getInt(data.position());
+            int length = data.getInt(data.position() + 4);
+
+            if (id < 0 || length < 0 || data.remaining() < 8 + length) {
+                break;
+            }
+
+            data.position(data.position() + 8);
+            byte[] bytes = new byte[length];
+            data.get(bytes);
+
+            String value = new String(bytes, StandardCharsets.UTF_8);
+            this.strings.put(id, value);
+            this.ids.put(value, id);
+            this.nextId = Math.max(this.nextId, id + 1);
+        }
+
+        // Drop an entry left incomplete by a crash
+        if (data.position() < size) {
+            this.stringsChannel.truncate(data.position());
+        }
+    }
+
+    private void loadSegments() throws IOException {
+
+        List<Path> paths = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+
+        // Names are zero-padded start times, so they sort chronologically
+        paths.sort(null);
+
+        for (int i = 0; i < paths.size(); i++) {
+            boolean last = i == paths.size() - 1;
+            Segment segment = Segment.open(paths.get(i), this.segmentRecords, last);
+
+            // The last segment is still appended to, so its postings stay in memory
+            MappedByteBuffer index = last ? null : readIndex(indexPath(segment.path), segment.count);
+
+            if (index != null) {
+                segment.index = index;
+                segment.live = null;
+            } else {
+                this.rebuild(segment);
+
+                if (!last) {
+                    this.seal(segment);
+                }
+            }
+
+            this.segments.add(segment);
+            this.lastTimestamp = Math.max(this.lastTimestamp, segment.end);
+        }
+    }
+
+    private static String segmentName(final long start) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, start, SEGMENT_SUFFIX);
+    }
+
+    private static Path indexPath(final Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+    }
+
+    /**
+     * @return the mapped index, or null if it is missing or does not match the segment
+     */
+    private static MappedByteBuffer readIndex(final Path path, final int count) throws IOException {
+
+        if (!Files.exists(path)) {
+            return null;
+        }
+
+        MappedByteBuffer index;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            index = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (index.capacity() < INDEX_HEADER_SIZE || index.getInt(0) != INDEX_MAGIC
+                || index.getInt(4) != INDEX_FORMAT || index.getInt(12) != count) {
+            return null;
+        }
+
+        long size = INDEX_HEADER_SIZE + (long) index.getInt(8) * INDEX_ENTRY_SIZE
+                + (long) count * 4 + (long) index.getInt(16) * 4;
+
+        return size == index.capacity() ? index : null;
+    }
+
+    /**
+     * Replaces a file with the supplied content, so a crash leaves either the old or the new one.
+     */
+    private static void writeAtomically(final Path path, final ByteBuffer data) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + TEMP_SUFFIX);
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * A sample read from the store.
+     */
+    @Getter
+    @ToString
+    public static class Record {
+
+        /**
+         * @return Time of the sample in milliseconds
+         */
+        private final long timestamp;
+
+        /**
+         * @return Target that was pinged
+         */
+        private final MCPingTarget target;
+
+        /**
+         * @return Online player count, -1 if the target did not answer
+         */
+        private final int online;
+
+        /**
+         * @return Maximum player count
+         */
+        private final int max;
+
+        /**
+         * @return Protocol version
+         */
+        private final int protocol;
+
+        /**
+         * @return Round trip time of the ping packet in microseconds
+         */
+        private final int rtt;
+
+        /**
+         * @return Description text
+         */
+        private final String description;
+
+        /**
+         * @return Version name
+         */
+        private final String version;
+
+        Record(final long timestamp, final MCPingTarget target, final int online, final int max, final int protocol,
+                final int rtt, final String description, final String version) {
+            this.timestamp = timestamp;
+            this.target = target;
+            this.online = online;
+            this.max = max;
+            this.protocol = protocol;
+            this.rtt = rtt;
+            this.description = description;
+            this.version = version;
+        }
+
+        /**
+         * @return whether the target did not answer
+         */
+        public boolean isOffline() {
+            return this.online == OFFLINE;
+        }
+
+    }
+
+    /**
+     * Aggregate of the records of a target over a time bucket.
+     */
+    @Getter
+    @ToString
+    public static class Bucket {
+
+        /**
+         * @return Start of the bucket in milliseconds
+         */
+        private final long start;
+
+        /**
+         * @return Number of samples
+         */
+        private int samples;
+
+        /**
+         * @return Number of samples where the target did not answer
+         */
+        private int offline;
+
+        /**
+         * @return Lowest online player count, -1 if the target never answered
+         */
+        private int minOnline = -1;
+
+        /**
+         * @return Highest online player count, -1 if the target never answered
+         */
+        private int maxOnline = -1;
+
+        /**
+         * @return Highest round trip time in microseconds
+         */
+        private int maxRtt;
+
+        @Getter(AccessLevel.NONE)
+        @ToString.Exclude
+        private long onlineSum;
+
+        @Getter(AccessLevel.NONE)
+        @ToString.Exclude
+        private long rttSum;
+
+        Bucket(final long start) {
+            this.start = start;
+        }
+
+        /**
+         * @return Mean online player count of the samples where the target answered
+         */
+        public double getMeanOnline() {
+            int answered = this.samples - this.offline;
+            return answered == 0 ? 0 : (double) this.onlineSum / answered;
+        }
+
+        /**
+         * @return Mean round trip time in microseconds of the samples where the target answered
+         */
+        public double getMeanRtt() {
+            int answered = this.samples - this.offline;
+            return answered == 0 ? 0 : (double) this.rttSum / answered;
+        }
+
+        /**
+         * @return Fraction of the samples where the target answered
+         */
+        public double getUptime() {
+            return this.samples == 0 ? 0 : (double) (this.samples - this.offline) / this.samples;
+        }
+
+        private void add(final Record record) {
+            this.samples++;
+
+            if (record.isOffline()) {
+                this.offline++;
+                return;
+            }
+
+            this.minOnline = this.minOnline == -1 ? record.online : Math.min(this.minOnline, record.online);
+            this.maxOnline = Math.max(this.maxOnline, record.online);
+            this.maxRtt = Math.max(this.maxRtt, record.rtt);
+            this.onlineSum += record.online;
+            this.rttSum += record.rtt;
+        }
+
+    }
+
+    private static final class Segment {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+
+        /**
+         * Start time the segment is named after, at or before its first record.
+         */
+        private final long start;
+
+        private volatile int count;
+        private volatile long first;
+        private volatile long end;
+
+        /**
+         * Postings of each target while the segment is appended to, null once it is indexed.
+         */
+        private volatile Map<Integer, LivePostings> live = new ConcurrentHashMap<>();
+
+        /**
+         * Mapped index file, set once the segment is no longer appended to.
+         */
+        private volatile MappedByteBuffer index;
+
+        private Segment(final Path path, final long start, final FileChannel channel, final MappedByteBuffer buffer,
+                final int count, final long first, final long end) {
+            this.path = path;
+            this.start = start;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.count = count;
+            this.first = first;
+            this.end = end;
+        }
+
+        private static Segment create(final Path path, final long start, final int records) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_SIZE + (long) records * RECORD_SIZE);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT);
+            buffer.putInt(COUNT_OFFSET, 0);
+
+            return new Segment(path, start, channel, buffer, 0, start, start);
+        }
+
+        /**
+         * @param active - whether the segment is appended to, in which case it is mapped for
+         *        writing with room for the supplied number of records; other segments are mapped
+         *        read-only as they are, so reopening with more records per segment does not grow
+         *        them
+         */
+        private static Segment open(final Path path, final int records, final boolean active) throws IOException {
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+
+            if (size < HEADER_SIZE) {
+                channel.close();
+                throw new IOException("Not a history segment: " + path);
+            }
+
+            MappedByteBuffer buffer = active
+                    ? channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                            Math.max(size, HEADER_SIZE + (long) records * RECORD_SIZE))
+                    : channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+                channel.close();
+                throw new IOException("Not a history segment: " + path);
+            }
+
+            String name = path.getFileName().toString();
+            long start = Long.parseLong(
+                    name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            int count = (int) Math.min(buffer.getInt(COUNT_OFFSET), (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE);
+            long first = count == 0 ? start : buffer.getLong(HEADER_SIZE);
+            long end = count == 0 ? start : buffer.getLong(HEADER_SIZE + (count - 1) * RECORD_SIZE);
+
+            return new Segment(path, start, channel, buffer, count, first, end);
+        }
+
+        /**
+         * Cuts the segment after the supplied number of records, through the channel since sealed
+         * segments are mapped read-only.
+         */
+        private void writeCount(final int count) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            header.putInt(0, count);
+            this.channel.write(header, COUNT_OFFSET);
+            this.channel.force(false);
+        }
+
+        /**
+         * @return the records of the target, null if it has none in the segment
+         */
+        private Postings postings(final int target) {
+            Map<Integer, LivePostings> live = this.live;
+
+            // Checked first: the index is set before the postings are dropped
+            if (live != null) {
+                LivePostings postings = live.get(target);
+                return postings == null ? null : postings.snapshot();
+            }
+
+            MappedByteBuffer index = this.index;
+            int targets = index.getInt(8);
+            int low = 0;
+            int high = targets - 1;
+
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int entry = INDEX_HEADER_SIZE + middle * INDEX_ENTRY_SIZE;
+                int id = index.getInt(entry);
+
+                if (id < target) {
+                    low = middle + 1;
+                } else if (id > target) {
+                    high = middle - 1;
+                } else {
+                    int base = INDEX_HEADER_SIZE + targets * INDEX_ENTRY_SIZE + index.getInt(entry + 4) * 4;
+                    return new Postings(null, index, base, index.getInt(entry + 8));
+                }
+            }
+
+            return null;
+        }
+
+        /**
+         * @return the index of the first record at or after the timestamp
+         */
+        private int firstAtOrAfter(final long timestamp, final int count) {
+            int low = 0;
+            int high = count;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (this.buffer.getLong(HEADER_SIZE + middle * RECORD_SIZE) < timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+    }
+
+    /**
+     * Indexes of the records of one target in a segment, in timestamp order.
+     */
+    private static final class Postings {
+
+        private final int[] array;
+        private final ByteBuffer buffer;
+        private final int base;
+        private final int size;
+
+        private Postings(final int[] array, final ByteBuffer buffer, final int base, final int size) {
+            this.array = array;
+            this.buffer = buffer;
+            this.base = base;
+            this.size = size;
+        }
+
+        private int get(final int i) {
+            return this.array != null ? this.array[i] : this.buffer.getInt(this.base + i * 4);
+        }
+
+        /**
+         * @return the first posting whose record is at or after the timestamp
+         */
+        private int firstAtOrAfter(final MappedByteBuffer records, final long timestamp) {
+            int low = 0;
+            int high = this.size;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (records.getLong(HEADER_SIZE + this.get(middle) * RECORD_SIZE) < timestamp) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+    }
+
+    /**
+     * Postings of a target in the segment being appended to. Appends are serialized, and readers
+     * see a consistent prefix through {@link #snapshot()}.
+     */
+    private static final class LivePostings {
+
+        private volatile int[] indexes = new int[4];
+        private volatile int size;
+
+        private void add(final int index) {
+            int[] indexes = this.indexes;
+            int size = this.size;
+
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+                this.indexes = indexes;
+            }
+
+            indexes[size] = index;
+            this.size = size + 1;
+        }
+
+        private Postings snapshot() {
+            int size = this.size;
+            return new Postings(this.indexes, null, 0, size);
+        }
+
+    }
+
+}
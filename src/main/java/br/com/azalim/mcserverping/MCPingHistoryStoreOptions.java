@@ -0,0 +1,35 @@
+package br.com.azalim.mcserverping;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Storage class for {@link MCPingHistoryStore} options.
+ */
+@Builder
+public class MCPingHistoryStoreOptions {
+
+    /**
+     * @return Number of records a segment file holds, which sets its size
+     */
+    @Getter
+    @Builder.Default
+    private int segmentRecords = 1 << 20;
+
+    /**
+     * @return Longest time span of a segment in milliseconds, the granularity of retention
+     */
+    @Getter
+    @Builder.Default
+    private long segmentDuration = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * @return Time records are kept in milliseconds, 0 keeps them forever
+     */
+    @Getter
+    @Builder.Default
+    private long retention = 0;
+
+}
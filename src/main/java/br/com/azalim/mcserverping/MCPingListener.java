@@ -0,0 +1,76 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Receives the progress of every ping made with the {@link MCPingOptions} it is set on. Durations
+ * are in nanoseconds.
+ * <p>
+ * Callbacks run on the thread doing the ping, which is the selector thread for
+ * {@link MCPingClient}, so they must be quick and must not throw.
+ */
+public interface MCPingListener {
+
+    /**
+     * Listener that ignores every event.
+     */
+    MCPingListener NONE = new MCPingListener() {
+    };
+
+    /**
+     * A ping was requested.
+     *
+     * @param options - options of the ping
+     */
+    default void onStart(MCPingOptions options) {
+    }
+
+    /**
+     * The address to connect to was resolved.
+     *
+     * @param options - options of the ping
+     * @param address - resolved address, after following the SRV record if any
+     * @param nanos - time spent resolving
+     */
+    default void onResolved(MCPingOptions options, InetSocketAddress address, long nanos) {
+    }
+
+    /**
+     * The TCP connection was established.
+     *
+     * @param options - options of the ping
+     * @param nanos - time spent connecting
+     */
+    default void onConnected(MCPingOptions options, long nanos) {
+    }
+
+    /**
+     * The status response was received and decoded.
+     *
+     * @param options - options of the ping
+     * @param nanos - time between sending the handshake and receiving the whole status response
+     */
+    default void onStatus(MCPingOptions options, long nanos) {
+    }
+
+    /**
+     * The pong was received and the ping completed successfully.
+     *
+     * @param options - options of the ping
+     * @param response - the response, with its {@link MCPingResponse#getTimings()}
+     */
+    default void onPong(MCPingOptions options, MCPingResponse response) {
+    }
+
+    /**
+     * The ping failed.
+     *
+     * @param options - options of the ping
+     * @param failure - kind of failure
+     * @param cause - the error the ping failed with
+     */
+    default void onFailure(MCPingOptions options, MCPingFailure failure, IOException cause) {
+    }
+
+}
@@ -0,0 +1,147 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import lombok.Getter;
+
+/**
+ * {@link MCPingListener} that records counters and latency histograms without locking.
+ * <p>
+ * Every completed ping is recorded in the overall histograms of each phase. When per-target
+ * recording is enabled, the total latency is also recorded in a histogram per
+ * {@link MCPingTarget}, each of which takes about 1 KB.
+ */
+public class MCPingMetrics implements MCPingListener {
+
+    private final boolean perTarget;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder succeeded = new LongAdder();
+    private final Map<MCPingFailure, LongAdder> failures = new EnumMap<>(MCPingFailure.class);
+
+    /**
+     * @return Histogram of the time spent resolving addresses
+     */
+    @Getter
+    private final MCPingHistogram resolve = new MCPingHistogram();
+
+    /**
+     * @return Histogram of the time spent connecting
+     */
+    @Getter
+    private final MCPingHistogram connect = new MCPingHistogram();
+
+    /**
+     * @return Histogram of the time spent waiting for status responses
+     */
+    @Getter
+    private final MCPingHistogram status = new MCPingHistogram();
+
+    /**
+     * @return Histogram of the ping packet round trips
+     */
+    @Getter
+    private final MCPingHistogram pong = new MCPingHistogram();
+
+    /**
+     * @return Histogram of the total time of successful pings
+     */
+    @Getter
+    private final MCPingHistogram total = new MCPingHistogram();
+
+    private final Map<MCPingTarget, MCPingHistogram> targets = new ConcurrentHashMap<>();
+
+    public MCPingMetrics() {
+        this(false);
+    }
+
+    /**
+     * @param perTarget - whether to keep a total latency histogram per {@link MCPingTarget}
+     */
+    public MCPingMetrics(final boolean perTarget) {
+        this.perTarget = perTarget;
+
+        for (MCPingFailure failure : MCPingFailure.values()) {
+            this.failures.put(failure, new LongAdder());
+        }
+    }
+
+    @Override
+    public void onStart(final MCPingOptions options) {
+        this.started.increment();
+    }
+
+    @Override
+    public void onPong(final MCPingOptions options, final MCPingResponse response) {
+        MCPingTimings timings = response.getTimings();
+
+        this.succeeded.increment();
+        this.resolve.record(timings.getResolve());
+        this.connect.record(timings.getConnect());
+        this.status.record(timings.getStatus());
+        this.pong.record(timings.getPong());
+        this.total.record(timings.getTotal());
+
+        if (this.perTarget) {
+            this.targets.computeIfAbsent(MCPingTarget.of(options), target -> new MCPingHistogram())
+                    .record(timings.getTotal());
+        }
+    }
+
+    @Override
+    public void onFailure(final MCPingOptions options, final MCPingFailure failure, final IOException cause) {
+        this.failures.get(failure).increment();
+    }
+
+    /**
+     * @return Number of pings started
+     */
+    public long getStarted() {
+        return this.started.sum();
+    }
+
+    /**
+     * @return Number of pings that completed successfully
+     */
+    public long getSucceeded() {
+        return this.succeeded.sum();
+    }
+
+    /**
+     * @param failure - kind of failure
+     * @return Number of pings that failed with the given kind of failure
+     */
+    public long getFailed(final MCPingFailure failure) {
+        return this.failures.get(failure).sum();
+    }
+
+    /**
+     * @return Number of pings that failed, whatever the kind of failure
+     */
+    public long getFailed() {
+        return this.failures.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * @param target - the target
+     * @return Histogram of the total time of successful pings to the target, or null if per-target
+     *         recording is disabled or the target never answered
+     */
+    public MCPingHistogram getTarget(final MCPingTarget target) {
+        return this.targets.get(target);
+    }
+
+    /**
+     * @return Total latency histograms of every target that answered, if per-target recording is
+     *         enabled
+     */
+    public Map<MCPingTarget, MCPingHistogram> getTargets() {
+        return Collections.unmodifiableMap(this.targets);
+    }
+
+}
@@ -0,0 +1,246 @@
+package br.com.azalim.mcserverping;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Getter;
+
+/**
+ * Samples the round trip time of a server by sending ping packets at a fixed interval over a
+ * long-lived connection, after fetching the status once.
+ * <p>
+ * Vanilla servers and most proxies close the connection after the first pong. When that happens
+ * the monitor reconnects and sends the handshake followed directly by the ping, falling back to
+ * requesting the status first for servers that reject pings without it. Samples always measure
+ * the ping packet alone, never the reconnection.
+ * <p>
+ * The monitor runs on its own daemon thread until it is closed or a ping times out. Instances
+ * are created with {@link MCPing#monitor(MCPingOptions, long, TimeUnit, MCPingSampleListener)}.
+ */
+public class MCPingMonitor implements Closeable {
+
+    private final MCPingOptions options;
+    private final long interval;
+    private final MCPingSampleListener listener;
+    private final Thread thread;
+
+    private final ByteBuffer ping = ByteBuffer.allocate(MCPingCodec.PING_SIZE);
+
+    /**
+     * @return Latest status response, null until the first one is received
+     */
+    @Getter
+    private volatile MCPingResponse status;
+
+    /**
+     * @return Number of samples taken
+     */
+    @Getter
+    private volatile long samples;
+
+    /**
+     * @return Number of times the server closed the connection and the monitor opened a new one
+     */
+    @Getter
+    private volatile long reconnects;
+
+    private volatile boolean closed;
+    private volatile Socket socket;
+    private DataInputStream in;
+    private OutputStream out;
+    private boolean statusRequired;
+
+    MCPingMonitor(final MCPingOptions options, final long interval, final TimeUnit unit,
+            final MCPingSampleListener listener) {
+        this.options = options;
+        this.interval = unit.toNanos(interval);
+        this.listener = listener;
+        this.thread = new Thread(this::run, "MCPingMonitor-" + MCPingTarget.of(options));
+        this.thread.setDaemon(true);
+    }
+
+    void start() {
+        this.thread.start();
+    }
+
+    /**
+     * @return whether the monitor has stopped, either closed or after an error
+     */
+    public boolean isClosed() {
+        return this.closed || !this.thread.isAlive();
+    }
+
+    /**
+     * Stops the monitor and closes its connection, waiting for its thread to end unless called
+     * from a {@link MCPingSampleListener} callback.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.disconnect();
+        LockSupport.unpark(this.thread);
+
+        if (Thread.currentThread() != this.thread) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        IOException cause = null;
+
+        try {
+            // Samples are only comparable on one address, so the monitor sticks to the preferred one
+            InetSocketAddress resolved = MCPingConnector.resolve(this.options).get(0);
+
+            this.connect(resolved, true);
+
+            long next = System.nanoTime();
+
+            while (!this.closed) {
+                next += this.interval;
+
+                long wait;
+                while (!this.closed && (wait = next - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                }
+
+                if (this.closed) {
+                    break;
+                }
+
+                long sample;
+
+                try {
+                    sample = this.ping();
+                } catch (SocketTimeoutException e) {
+                    throw e;
+                } catch (IOException e) {
+                    if (this.closed) {
+                        break;
+                    }
+
+                    sample = this.reconnect(resolved);
+                }
+
+                this.samples++;
+                this.listener.onSample(sample);
+            }
+        } catch (IOException e) {
+            if (!this.closed) {
+                cause = e;
+            }
+        } finally {
+            this.closed = true;
+            this.disconnect();
+            this.listener.onClose(cause);
+        }
+    }
+
+    private long reconnect(final InetSocketAddress address) throws IOException {
+        this.disconnect();
+        this.reconnects++;
+        this.listener.onReconnect();
+
+        if (!this.statusRequired) {
+            this.connect(address, false);
+
+            try {
+                return this.ping();
+            } catch (SocketTimeoutException e) {
+                throw e;
+            } catch (IOException e) {
+                if (this.closed) {
+                    throw e;
+                }
+
+                // BungeeCord and others disconnect clients pinging before requesting the status
+                this.statusRequired = true;
+                this.disconnect();
+            }
+        }
+
+        this.connect(address, true);
+        return this.ping();
+    }
+
+    private void connect(final InetSocketAddress address, final boolean requestStatus) throws IOException {
+        Socket socket = new Socket();
+        this.socket = socket;
+
+        if (this.closed) {
+            socket.close();
+            throw new IOException("Monitor closed.");
+        }
+
+        socket.setSoTimeout(this.options.getReadTimeout());
+        socket.setTcpNoDelay(true);
+        socket.connect(address, this.options.getTimeout());
+
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = socket.getOutputStream();
+
+        // > Handshake & status request
+        byte[] request = MCPingCodec.getRequest(this.options);
+        this.out.write(request, 0, requestStatus ? request.length : request.length - MCPingCodec.STATUS_REQUEST_SIZE);
+
+        if (requestStatus) {
+            // < Status response
+            MCPingBuffers buffers = MCPingBuffers.acquire();
+            MCPingResponse response;
+
+            try {
+                ByteBuffer data = MCPing.readStatus(this.in, this.options.getMaxResponseBytes(), buffers);
+                response = MCPing.decodeResponse(data.array(), 0, data.limit(),
+                        MCPingCodec.getCharset(this.options), this.options.getFields());
+            } finally {
+                buffers.release();
+            }
+
+            response.setHostname(address.getHostString());
+            response.setPort(address.getPort());
+
+            this.status = response;
+            this.listener.onStatus(response);
+        }
+    }
+
+    private long ping() throws IOException {
+        // > Ping
+        long start = System.nanoTime();
+        this.ping.clear();
+        MCPingCodec.writePing(this.ping, start);
+        this.out.write(this.ping.array());
+
+        // < Ping
+        long payload = MCPing.readPong(this.in);
+        long sample = System.nanoTime() - start;
+
+        MCPingUtil.io(payload != start, "Server returned unexpected value.");
+        return sample;
+    }
+
+    private void disconnect() {
+        Socket socket = this.socket;
+
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+}
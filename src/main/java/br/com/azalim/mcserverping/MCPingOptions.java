@@ -28,7 +28,11 @@
  */
 package br.com.azalim.mcserverping;
 
-import com.google.common.base.Charsets;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 import lombok.Builder;
 import lombok.Getter;
@@ -44,7 +48,7 @@ public class MCPingOptions {
 
     @Getter
     @Builder.Default
-    private String charset = Charsets.UTF_8.displayName();
+    private String charset = StandardCharsets.UTF_8.name();
 
     @Getter
     @Builder.Default
@@ -58,8 +62,53 @@ public class MCPingOptions {
     @Builder.Default
     private int readTimeout = 5000;
 
+    /**
+     * @return Time in milliseconds before trying the next address of a target while the previous
+     *         connection attempt is still pending, see RFC 8305
+     */
+    @Getter
+    @Builder.Default
+    private int connectAttemptDelay = 250;
+
+    /**
+     * @return Estimator deriving the connect and read timeouts from past pings of the target, or
+     *         null to always use {@link #getTimeout()} and {@link #getReadTimeout()}
+     */
+    @Getter
+    private MCPingTimeoutEstimator timeoutEstimator;
+
     @Getter
     @Builder.Default
     private int protocolVersion = 4;
 
+    /**
+     * @return Largest status response packet accepted, in bytes. Servers announcing a larger one
+     *         fail the ping with {@link MCPingFailure#PROTOCOL} before anything is allocated.
+     */
+    @Getter
+    @Builder.Default
+    private int maxResponseBytes = 1024 * 1024;
+
+    @Getter
+    @Builder.Default
+    private MCPingResolver resolver = MCPingSrvResolver.DEFAULT;
+
+    @Getter
+    @Builder.Default
+    private Set<MCPingField> fields = EnumSet.allOf(MCPingField.class);
+
+    @Getter
+    @Builder.Default
+    private MCPingListener listener = MCPingListener.NONE;
+
+    /**
+     * Encoded handshake and status request, see {@link MCPingCodec#getRequest(MCPingOptions)}.
+     */
+    final AtomicReference<byte[]> request = new AtomicReference<>();
+
+    /**
+     * Charset named by {@link #getCharset()}, see {@link MCPingCodec#getCharset(MCPingOptions)}.
+     */
+    final AtomicReference<Charset> resolvedCharset = new AtomicReference<>();
+
 }
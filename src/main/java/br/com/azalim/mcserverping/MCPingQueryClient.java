@@ -0,0 +1,585 @@
+package br.com.azalim.mcserverping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Client of the UDP Query protocol (GameSpy 4), served by Minecraft servers started with
+ * {@code enable-query=true}, on {@code query.port}.
+ * <p>
+ * A query is a handshake, answered with a challenge token, followed by a statistics request
+ * carrying the token. Tokens are cached per address for {@link MCPingQueryClientOptions#getTokenTtl()}
+ * and reused, so repeated queries of a target cost a single round trip. A query whose cached token
+ * goes unanswered drops it and starts over with a handshake, since servers silently ignore
+ * requests with expired tokens.
+ * <p>
+ * Every query goes through one {@link DatagramChannel} driven by a single selector thread, and
+ * answers are matched to queries by their session id. Lost datagrams are sent again after
+ * {@link MCPingQueryClientOptions#getTimeout()}, up to {@link MCPingQueryClientOptions#getRetries()}
+ * times.
+ * <p>
+ * Returned futures are completed on the selector thread, so expensive dependent work should use
+ * the {@code *Async} variants of {@link CompletableFuture}.
+ */
+public class MCPingQueryClient implements Closeable {
+
+    private static final long SWEEP_INTERVAL = 100;
+
+    private static final byte TYPE_HANDSHAKE = 9;
+    private static final byte TYPE_STAT = 0;
+
+    private static final int MAX_SESSIONS = 1 << 16;
+    private static final int FULL_STAT_PADDING = 11;
+    private static final int PLAYERS_PADDING = 10;
+
+    private final MCPingQueryClientOptions options;
+    private final ThreadPoolExecutor resolvers;
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final Thread thread;
+
+    private final ByteBuffer in = ByteBuffer.allocate(65536);
+    private final ByteBuffer out = ByteBuffer.allocate(16);
+
+    private final Queue<Query> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final Map<Integer, Query> active = new HashMap<>();
+    private final Map<InetSocketAddress, Token> tokens = new HashMap<>();
+    private volatile int activeCount;
+    private volatile long handshakes;
+    private int nextSession;
+    private long lastTokenSweep;
+
+    private volatile boolean closed;
+
+    public MCPingQueryClient() throws IOException {
+        this(MCPingQueryClientOptions.builder().build());
+    }
+
+    public MCPingQueryClient(final MCPingQueryClientOptions options) throws IOException {
+        if (options.getMaxInFlight() <= 0 || options.getMaxInFlight() > MAX_SESSIONS) {
+            throw new IllegalArgumentException("maxInFlight must be between 1 and " + MAX_SESSIONS + ".");
+        }
+
+        if (options.getTimeout() <= 0) {
+            throw new IllegalArgumentException("timeout must be positive.");
+        }
+
+        if (options.getRetries() < 0) {
+            throw new IllegalArgumentException("retries cannot be negative.");
+        }
+
+        if (options.getResolverThreads() <= 0) {
+            throw new IllegalArgumentException("resolverThreads must be positive.");
+        }
+
+        AtomicInteger resolverId = new AtomicInteger();
+
+        this.options = options;
+        this.resolvers = new ThreadPoolExecutor(options.getResolverThreads(), options.getResolverThreads(),
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread resolver = new Thread(runnable,
+                            "MCPingQueryClient-resolver-" + resolverId.incrementAndGet());
+                    resolver.setDaemon(true);
+                    return resolver;
+                });
+
+        this.selector = Selector.open();
+        this.channel = DatagramChannel.open();
+        this.channel.configureBlocking(false);
+        this.channel.register(this.selector, SelectionKey.OP_READ);
+
+        this.thread = new Thread(this::run, "MCPingQueryClient");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Asynchronously fetches the basic statistics of a server: MOTD, game type, map, player counts
+     * and host.
+     *
+     * @param target - query address of the server
+     * @return a future completed with the {@link MCPingQueryResponse}, or exceptionally with an
+     *         {@link IOException}
+     */
+    public CompletableFuture<MCPingQueryResponse> query(final MCPingTarget target) {
+        return this.query(target, false);
+    }
+
+    /**
+     * Asynchronously fetches the full statistics of a server, which add the version, plugins and
+     * the complete player list to the basic ones.
+     *
+     * @param target - query address of the server
+     * @return a future completed with the {@link MCPingQueryResponse}, or exceptionally with an
+     *         {@link IOException}
+     */
+    public CompletableFuture<MCPingQueryResponse> queryFull(final MCPingTarget target) {
+        return this.query(target, true);
+    }
+
+    /**
+     * @return Number of queries waiting for a slot
+     */
+    public int getQueueDepth() {
+        return this.pendingCount.get();
+    }
+
+    /**
+     * @return Number of queries waiting for an answer
+     */
+    public int getInFlight() {
+        return this.activeCount;
+    }
+
+    /**
+     * @return Number of handshakes sent, the queries that could not reuse a challenge token
+     */
+    public long getHandshakes() {
+        return this.handshakes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+
+        // Resolutions that never started would leave their futures pending forever
+        for (Runnable task : this.resolvers.shutdownNow()) {
+            ((Resolution) task).future.completeExceptionally(new IOException("Client is closed."));
+        }
+
+        this.selector.wakeup();
+
+        if (Thread.currentThread() != this.thread) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private CompletableFuture<MCPingQueryResponse> query(final MCPingTarget target, final boolean full) {
+
+        Objects.requireNonNull(target, "Target cannot be null.");
+
+        CompletableFuture<MCPingQueryResponse> future = new CompletableFuture<>();
+
+        if (this.closed) {
+            future.completeExceptionally(new IOException("Client is closed."));
+            return future;
+        }
+
+        try {
+            this.resolvers.execute(new Resolution(target, full, future));
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IOException("Client is closed."));
+        }
+
+        return future;
+    }
+
+    private void resolve(final MCPingTarget target, final boolean full,
+            final CompletableFuture<MCPingQueryResponse> future) {
+
+        InetSocketAddress address;
+
+        try {
+            address = new InetSocketAddress(InetAddress.getByName(target.getHostname()), target.getPort());
+        } catch (UnknownHostException e) {
+            future.completeExceptionally(e);
+            return;
+        }
+
+        Query query = new Query(target, address, full, future);
+        this.pending.add(query);
+        this.pendingCount.incrementAndGet();
+
+        if (this.closed && this.pending.remove(query)) {
+            this.pendingCount.decrementAndGet();
+            future.completeExceptionally(new IOException("Client is closed."));
+            return;
+        }
+
+        this.selector.wakeup();
+    }
+
+    private void run() {
+        long lastSweep = System.currentTimeMillis();
+
+        try {
+            while (!this.closed) {
+                this.admit();
+                this.selector.select(SWEEP_INTERVAL);
+
+                if (!this.selector.selectedKeys().isEmpty()) {
+                    this.selector.selectedKeys().clear();
+                    this.receive();
+                }
+
+                long now = System.currentTimeMillis();
+
+                if (now - lastSweep >= SWEEP_INTERVAL) {
+                    this.sweep(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            this.closed = true;
+        } finally {
+            IOException cause = new IOException("Client is closed.");
+
+            new ArrayList<>(this.active.values()).forEach(query -> this.fail(query, cause));
+
+            Query query;
+            while ((query = this.pending.poll()) != null) {
+                this.pendingCount.decrementAndGet();
+                query.future.completeExceptionally(cause);
+            }
+
+            try {
+                this.channel.close();
+                this.selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void admit() {
+        while (this.active.size() < this.options.getMaxInFlight()) {
+            Query query = this.pending.poll();
+
+            if (query == null) {
+                return;
+            }
+
+            this.pendingCount.decrementAndGet();
+
+            // Only the low nibble of each byte is echoed back reliably, 16 bits in all
+            while (this.active.containsKey(this.nextSession)) {
+                this.nextSession = (this.nextSession + 1) % MAX_SESSIONS;
+            }
+
+            query.session = this.nextSession;
+            this.nextSession = (this.nextSession + 1) % MAX_SESSIONS;
+            this.active.put(query.session, query);
+            this.activeCount = this.active.size();
+            this.send(query);
+        }
+    }
+
+    private void sweep(final long now) {
+        for (Query query : new ArrayList<>(this.active.values())) {
+            if (now < query.deadline) {
+                continue;
+            }
+
+            if (query.cachedToken) {
+                // The server renewed its tokens before the cache expired this one
+                this.tokens.remove(query.address, query.token);
+                query.token = null;
+                this.send(query);
+            } else if (query.attempts < this.options.getRetries()) {
+                query.attempts++;
+                this.send(query);
+            } else {
+                this.fail(query, new SocketTimeoutException("Query timed out."));
+            }
+        }
+
+        if (now - this.lastTokenSweep >= this.options.getTokenTtl()) {
+            this.tokens.values().removeIf(token -> now >= token.expiresAt);
+            this.lastTokenSweep = now;
+        }
+    }
+
+    /**
+     * Sends the statistics request if a token of the address is cached, or the handshake
+     * otherwise.
+     */
+    private void send(final Query query) {
+        long now = System.currentTimeMillis();
+        Token token = query.token;
+
+        if (token == null) {
+            token = this.tokens.get(query.address);
+
+            if (token != null && now >= token.expiresAt) {
+                this.tokens.remove(query.address);
+                token = null;
+            }
+
+            query.token = token;
+            query.cachedToken = token != null;
+        }
+
+        this.out.clear();
+        this.out.put((byte) 0xFE).put((byte) 0xFD);
+
+        if (token == null) {
+            this.out.put(TYPE_HANDSHAKE).putInt(sessionId(query.session));
+            query.state = State.HANDSHAKE;
+            this.handshakes++;
+        } else {
+            this.out.put(TYPE_STAT).putInt(sessionId(query.session)).putInt(token.value);
+
+            if (query.full) {
+                this.out.putInt(0);
+            }
+
+            query.state = State.STAT;
+            query.sent = System.nanoTime();
+        }
+
+        query.deadline = now + this.options.getTimeout();
+        this.out.flip();
+
+        try {
+            // A datagram dropped by a full send buffer is sent again after the timeout
+            this.channel.send(this.out, query.address);
+        } catch (IOException e) {
+            this.fail(query, e);
+        }
+    }
+
+    private void receive() throws IOException {
+        while (true) {
+            this.in.clear();
+            SocketAddress from = this.channel.receive(this.in);
+
+            if (from == null) {
+                return;
+            }
+
+            this.in.flip();
+
+            if (this.in.remaining() < 5) {
+                continue;
+            }
+
+            byte type = this.in.get();
+            Query query = this.active.get(sessionNumber(this.in.getInt()));
+
+            // Late answers to queries that were retried or already failed are dropped
+            if (query == null || !query.address.equals(from)) {
+                continue;
+            }
+
+            try {
+                if (type == TYPE_HANDSHAKE && query.state == State.HANDSHAKE) {
+                    String token = readString(this.in);
+                    MCPingUtil.io(token == null, "Server returned invalid packet.");
+
+                    Token cached = new Token((int) Long.parseLong(token.trim()),
+                            System.currentTimeMillis() + this.options.getTokenTtl());
+                    this.tokens.put(query.address, cached);
+                    query.token = cached;
+                    query.cachedToken = false;
+                    this.send(query);
+                } else if (type == TYPE_STAT && query.state == State.STAT) {
+                    MCPingQueryResponse response = query.full ? readFullStat(this.in) : readBasicStat(this.in);
+                    response.setPing(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - query.sent));
+                    response.setTarget(query.target);
+                    this.finish(query, response);
+                }
+            } catch (MCPingException e) {
+                this.fail(query, e);
+            } catch (NumberFormatException | BufferUnderflowException e) {
+                this.fail(query, new MCPingException(MCPingFailure.DECODE, "Server returned malformed statistics.", e));
+            }
+        }
+    }
+
+    private void finish(final Query query, final MCPingQueryResponse response) {
+        this.active.remove(query.session);
+        this.activeCount = this.active.size();
+        query.future.complete(response);
+    }
+
+    private void fail(final Query query, final IOException cause) {
+        this.active.remove(query.session);
+        this.activeCount = this.active.size();
+        query.future.completeExceptionally(cause);
+    }
+
+    private static MCPingQueryResponse readBasicStat(final ByteBuffer in) throws IOException {
+        MCPingQueryResponse response = new MCPingQueryResponse();
+
+        response.setMotd(requireString(in));
+        response.setGameType(requireString(in));
+        response.setMap(requireString(in));
+        response.setOnline(Integer.parseInt(requireString(in)));
+        response.setMax(Integer.parseInt(requireString(in)));
+        // The only little-endian field of the protocol
+        response.setHostPort(in.get() & 0xFF | (in.get() & 0xFF) << 8);
+        response.setHostIp(readString(in));
+
+        return response;
+    }
+
+    private static MCPingQueryResponse readFullStat(final ByteBuffer in) throws IOException {
+        MCPingUtil.io(in.remaining() < FULL_STAT_PADDING, "Server returned invalid packet.");
+        in.position(in.position() + FULL_STAT_PADDING);
+
+        Map<String, String> values = new LinkedHashMap<>();
+        String key;
+
+        while ((key = readString(in)) != null && !key.isEmpty()) {
+            values.put(key, requireString(in));
+        }
+
+        List<String> players = new ArrayList<>();
+
+        if (in.remaining() >= PLAYERS_PADDING) {
+            in.position(in.position() + PLAYERS_PADDING);
+
+            String player;
+
+            while ((player = readString(in)) != null && !player.isEmpty()) {
+                players.add(player);
+            }
+        }
+
+        MCPingQueryResponse response = new MCPingQueryResponse();
+        response.setMotd(values.get("hostname"));
+        response.setGameType(values.get("gametype"));
+        response.setGameId(values.get("game_id"));
+        response.setVersion(values.get("version"));
+        response.setPlugins(values.get("plugins"));
+        response.setMap(values.get("map"));
+        response.setOnline(Integer.parseInt(values.getOrDefault("numplayers", "0")));
+        response.setMax(Integer.parseInt(values.getOrDefault("maxplayers", "0")));
+        response.setHostPort(Integer.parseInt(values.getOrDefault("hostport", "0")));
+        response.setHostIp(values.get("hostip"));
+        response.setPlayers(players);
+        response.setValues(values);
+
+        return response;
+    }
+
+    private static String requireString(final ByteBuffer in) throws IOException {
+        String value = readString(in);
+        MCPingUtil.io(value == null, "Server prematurely ended packet.");
+        return value;
+    }
+
+    /**
+     * @return the null-terminated string at the buffer position, or null if the buffer ends first
+     */
+    private static String readString(final ByteBuffer in) {
+        int start = in.position();
+
+        for (int i = start; i < in.limit(); i++) {
+            if (in.get(i) == 0) {
+                String value = new String(in.array(), in.arrayOffset() + start, i - start, StandardCharsets.UTF_8);
+                in.position(i + 1);
+                return value;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Spreads a 16-bit session number over the low nibble of each byte of the session id.
+     */
+    private static int sessionId(final int session) {
+        return (session & 0xF) | (session >> 4 & 0xF) << 8 | (session >> 8 & 0xF) << 16 | (session >> 12 & 0xF) << 24;
+    }
+
+    private static int sessionNumber(final int id) {
+        return (id & 0xF) | (id >> 8 & 0xF) << 4 | (id >> 16 & 0xF) << 8 | (id >> 24 & 0xF) << 12;
+    }
+
+    private enum State {
+        HANDSHAKE, STAT
+    }
+
+    /**
+     * A queued resolve stage, kept as its own type so {@link #close()} can fail the futures of the
+     * ones that never ran.
+     */
+    private final class Resolution implements Runnable {
+
+        private final MCPingTarget target;
+        private final boolean full;
+        private final CompletableFuture<MCPingQueryResponse> future;
+
+        private Resolution(final MCPingTarget target, final boolean full,
+                final CompletableFuture<MCPingQueryResponse> future) {
+            this.target = target;
+            this.full = full;
+            this.future = future;
+        }
+
+        @Override
+        public void run() {
+            resolve(this.target, this.full, this.future);
+        }
+
+    }
+
+    private static final class Token {
+
+        private final int value;
+        private final long expiresAt;
+
+        private Token(final int value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+    private static final class Query {
+
+        private final MCPingTarget target;
+        private final InetSocketAddress address;
+        private final boolean full;
+        private final CompletableFuture<MCPingQueryResponse> future;
+
+        private int session;
+        private State state = State.HANDSHAKE;
+        private Token token;
+        private boolean cachedToken;
+        private int attempts;
+        private long deadline;
+        private long sent;
+
+        private Query(final MCPingTarget target, final InetSocketAddress address, final boolean full,
+                final CompletableFuture<MCPingQueryResponse> future) {
+            this.target = target;
+            this.address = address;
+            this.full = full;
+            this.future = future;
+        }
+
+    }
+
+}
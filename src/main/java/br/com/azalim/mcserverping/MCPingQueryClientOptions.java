@@ -0,0 +1,50 @@
+package br.com.azalim.mcserverping;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Storage class for {@link MCPingQueryClient} options.
+ */
+@Builder
+public class MCPingQueryClientOptions {
+
+    /**
+     * @return Maximum number of queries the client has outstanding at once
+     */
+    @Getter
+    @Builder.Default
+    private int maxInFlight = 1024;
+
+    /**
+     * @return Time in milliseconds to wait for each answer before sending the request again
+     */
+    @Getter
+    @Builder.Default
+    private int timeout = 1000;
+
+    /**
+     * @return Number of times a request is sent again before the query fails
+     */
+    @Getter
+    @Builder.Default
+    private int retries = 2;
+
+    /**
+     * @return Time in milliseconds a challenge token is reused for. Servers renew their tokens
+     *         every 30 seconds.
+     */
+    @Getter
+    @Builder.Default
+    private long tokenTtl = TimeUnit.SECONDS.toMillis(25);
+
+    /**
+     * @return Number of threads resolving hostnames
+     */
+    @Getter
+    @Builder.Default
+    private int resolverThreads = 4;
+
+}
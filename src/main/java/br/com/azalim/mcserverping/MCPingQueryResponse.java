@@ -0,0 +1,94 @@
+package br.com.azalim.mcserverping;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Statistics returned by the Query protocol, see {@link MCPingQueryClient}.
+ * <p>
+ * Basic statistics fill the MOTD, game type, map, player counts and host. Full statistics also
+ * fill the version, plugins and the complete player list, along with every raw key and value the
+ * server sent.
+ */
+@Getter
+@Setter(value = AccessLevel.PACKAGE)
+@ToString
+public class MCPingQueryResponse {
+
+    /**
+     * @return the MOTD, as plain text with legacy color codes
+     */
+    private String motd;
+
+    /**
+     * @return Game type, SMP on vanilla servers
+     */
+    private String gameType;
+
+    /**
+     * @return Game id, MINECRAFT on vanilla servers, null for basic statistics
+     */
+    private String gameId;
+
+    /**
+     * @return Version name, null for basic statistics
+     */
+    private String version;
+
+    /**
+     * @return Server software and plugins, null for basic statistics
+     */
+    private String plugins;
+
+    /**
+     * @return Name of the default world
+     */
+    private String map;
+
+    /**
+     * @return Online player count
+     */
+    private int online;
+
+    /**
+     * @return Maximum player count
+     */
+    private int max;
+
+    /**
+     * @return Game port the server reports
+     */
+    private int hostPort;
+
+    /**
+     * @return Game address the server reports
+     */
+    private String hostIp;
+
+    /**
+     * @return Names of every online player, null for basic statistics
+     */
+    private List<String> players;
+
+    /**
+     * @return Every key and value of full statistics, null for basic statistics
+     */
+    @ToString.Exclude
+    private Map<String, String> values;
+
+    /**
+     * @return Round trip of the statistics request, in ms
+     */
+    private long ping;
+
+    /**
+     * @return Target that was queried
+     */
+    private MCPingTarget target;
+
+}
@@ -0,0 +1,38 @@
+package br.com.azalim.mcserverping;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resolves the address a {@link MCPing} request connects to.
+ * <p>
+ * Resolvers report failures by throwing an {@link java.io.UncheckedIOException}: pings fail with
+ * its cause, so a {@link MCPingException} keeps its {@link MCPingFailure}.
+ */
+@FunctionalInterface
+public interface MCPingResolver {
+
+    /**
+     * Resolves the address to connect to for the supplied hostname and port, following the
+     * {@code _minecraft._tcp} SRV record if there is one.
+     *
+     * @param hostname - the hostname given in {@link MCPingOptions}
+     * @param port - the port given in {@link MCPingOptions}
+     * @return an unresolved {@link InetSocketAddress} to connect to
+     */
+    InetSocketAddress resolve(String hostname, int port);
+
+    /**
+     * Resolves every address that can serve the supplied hostname and port, most preferred first.
+     * Pings try them in order until one accepts the connection.
+     *
+     * @param hostname - the hostname given in {@link MCPingOptions}
+     * @param port - the port given in {@link MCPingOptions}
+     * @return the unresolved {@link InetSocketAddress}es to connect to, never empty
+     */
+    default List<InetSocketAddress> resolveAll(final String hostname, final int port) {
+        return Collections.singletonList(this.resolve(hostname, port));
+    }
+
+}
@@ -28,9 +28,12 @@
  */
 package br.com.azalim.mcserverping;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import lombok.AccessLevel;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
@@ -38,52 +41,143 @@ import lombok.ToString;
 /**
  * References: http://wiki.vg/Server_List_Ping
  * https://gist.github.com/thinkofdeath/6927216
+ * <p>
+ * Two responses are equal when the server reported the same status: description, players,
+ * version and favicon, the latter compared through {@link #getFaviconHash()}. How the server was
+ * reached (ping, timings, hostname and port) is not part of equality.
  */
 @Getter
 @ToString
+@EqualsAndHashCode
 public class MCPingResponse {
 
     /**
      * @return the MOTD
      */
+    @Setter(value = AccessLevel.PACKAGE)
     private Description description;
 
     /**
      * @return @{link Players}
      */
+    @Setter(value = AccessLevel.PACKAGE)
     private Players players;
 
     /**
      * @return @{link Version}
      */
+    @Setter(value = AccessLevel.PACKAGE)
     private Version version;
 
     /**
      * @return Base64 encoded favicon image
      */
+    @Setter(value = AccessLevel.PACKAGE)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private String favicon;
 
     /**
-     * @return Ping in ms.
+     * Favicon as it appeared in the payload, JSON escapes included, until it is decoded.
+     */
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient volatile byte[] faviconData;
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient Charset faviconCharset;
+
+    @Getter(AccessLevel.NONE)
+    @ToString.Exclude
+    private transient long faviconHash;
+
+    /**
+     * @return Time spent establishing the TCP connection, in ms.
      */
     @Setter(value = AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
     private long ping;
 
+    /**
+     * @return {@link MCPingTimings} of each phase of the ping
+     */
+    @Setter(value = AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    private MCPingTimings timings;
+
     /**
      * @return Host name, will show real IP if using SRV record
      */
     @Setter(value = AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
     private String hostname;
 
     /**
      * @return Port, will show real port if using SRV record
      */
     @Setter(value = AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
     private long port;
 
+    /**
+     * The favicon is decoded on first access when it was deferred while decoding the response.
+     *
+     * @return Base64 encoded favicon image
+     */
+    @ToString.Include(name = "favicon")
+    public String getFavicon() {
+        byte[] data = this.faviconData;
+        String favicon = this.favicon;
+
+        if (favicon == null && data != null) {
+            if (this.faviconHash == 0) {
+                this.faviconHash = MCPingFavicon.hashEscaped(data);
+            }
+            favicon = MCPingFavicon.decode(data, this.faviconCharset);
+            this.favicon = favicon;
+            this.faviconData = null;
+        }
+        return favicon;
+    }
+
+    /**
+     * Hashes the favicon without decoding it. The hash is computed over the unescaped favicon, so
+     * the same image hashes the same whether or not it was decoded, and however the server escaped
+     * it.
+     *
+     * @return 64-bit hash of the favicon, or 0 if there is none
+     */
+    @EqualsAndHashCode.Include
+    public long getFaviconHash() {
+        long hash = this.faviconHash;
+
+        if (hash == 0) {
+            byte[] data = this.faviconData;
+            String favicon = this.favicon;
+
+            if (data != null) {
+                hash = MCPingFavicon.hashEscaped(data);
+            } else if (favicon != null) {
+                hash = MCPingFavicon.hash(favicon.getBytes(StandardCharsets.UTF_8));
+            }
+            this.faviconHash = hash;
+        }
+        return hash;
+    }
+
+    void setFaviconData(final byte[] faviconData, final Charset faviconCharset) {
+        this.favicon = null;
+        this.faviconData = faviconData;
+        this.faviconCharset = faviconCharset;
+        this.faviconHash = 0;
+    }
+
     @Getter
+    @Setter(value = AccessLevel.PACKAGE)
     @ToString
-    public class Description {
+    @EqualsAndHashCode
+    public static class Description {
 
         /**
          * @return Server description text
@@ -97,8 +191,10 @@ public class MCPingResponse {
     }
 
     @Getter
+    @Setter(value = AccessLevel.PACKAGE)
     @ToString
-    public class Players {
+    @EqualsAndHashCode
+    public static class Players {
 
         /**
          * @return Maximum player count
@@ -118,8 +214,10 @@ public class MCPingResponse {
     }
 
     @Getter
+    @Setter(value = AccessLevel.PACKAGE)
     @ToString
-    public class Player {
+    @EqualsAndHashCode
+    public static class Player {
 
         /**
          * @return Name of player
@@ -134,8 +232,10 @@ public class MCPingResponse {
     }
 
     @Getter
+    @Setter(value = AccessLevel.PACKAGE)
     @ToString
-    public class Version {
+    @EqualsAndHashCode
+    public static class Version {
 
         /**
          * @return Version name (ex: 13w41a)
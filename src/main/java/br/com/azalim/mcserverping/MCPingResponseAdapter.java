@@ -0,0 +1,312 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import br.com.azalim.mcserverping.MCPingResponse.Description;
+import br.com.azalim.mcserverping.MCPingResponse.Player;
+import br.com.azalim.mcserverping.MCPingResponse.Players;
+import br.com.azalim.mcserverping.MCPingResponse.Version;
+
+/**
+ * Single-pass {@link TypeAdapter} for the status response payload.
+ * <p>
+ * Fields are bound as they are read, without building a {@link JsonElement} tree of the whole
+ * payload or going through reflection. Unknown fields, and fields that were not selected, are
+ * skipped.
+ */
+final class MCPingResponseAdapter extends TypeAdapter<MCPingResponse> {
+
+    /**
+     * Adapters by field selection and favicon deferral, indexed by {@link #index(Set, boolean)}.
+     */
+    private static final AtomicReferenceArray<MCPingResponseAdapter> ADAPTERS =
+            new AtomicReferenceArray<>(1 << (MCPingField.values().length + 1));
+
+    private final Set<MCPingField> fields;
+    private final boolean deferFavicon;
+
+    /**
+     * @param fields - fields to bind
+     * @param deferFavicon - whether to skip the favicon so the caller can attach it as raw bytes
+     */
+    MCPingResponseAdapter(final Set<MCPingField> fields, final boolean deferFavicon) {
+        this.fields = fields;
+        this.deferFavicon = deferFavicon;
+    }
+
+    /**
+     * @param fields - fields to bind
+     * @param deferFavicon - whether to skip the favicon so the caller can attach it as raw bytes
+     * @return the shared adapter for the combination, created on first use
+     */
+    static MCPingResponseAdapter of(final Set<MCPingField> fields, final boolean deferFavicon) {
+        int index = index(fields, deferFavicon);
+        MCPingResponseAdapter adapter = ADAPTERS.get(index);
+
+        if (adapter == null) {
+            Set<MCPingField> copy = EnumSet.noneOf(MCPingField.class);
+            copy.addAll(fields);
+            ADAPTERS.compareAndSet(index, null, new MCPingResponseAdapter(copy, deferFavicon));
+            adapter = ADAPTERS.get(index);
+        }
+
+        return adapter;
+    }
+
+    private static int index(final Set<MCPingField> fields, final boolean deferFavicon) {
+        int index = deferFavicon ? 1 : 0;
+
+        for (MCPingField field : fields) {
+            index |= 2 << field.ordinal();
+        }
+
+        return index;
+    }
+
+    @Override
+    public MCPingResponse read(final JsonReader in) throws IOException {
+
+        if (skipNull(in)) {
+            return null;
+        }
+
+        MCPingResponse response = new MCPingResponse();
+
+        in.beginObject();
+
+        while (in.hasNext()) {
+            String name = in.nextName();
+
+            if ("description".equals(name) && this.fields.contains(MCPingField.DESCRIPTION)) {
+                response.setDescription(readDescription(in));
+            } else if ("players".equals(name) && this.fields.contains(MCPingField.PLAYERS)) {
+                response.setPlayers(this.readPlayers(in));
+            } else if ("version".equals(name) && this.fields.contains(MCPingField.VERSION)) {
+                response.setVersion(readVersion(in));
+            } else if ("favicon".equals(name) && this.fields.contains(MCPingField.FAVICON) && !this.deferFavicon) {
+                response.setFavicon(readString(in));
+            } else {
+                in.skipValue();
+            }
+        }
+
+        in.endObject();
+
+        return response;
+    }
+
+    @Override
+    public void write(final JsonWriter out, final MCPingResponse response) throws IOException {
+
+        if (response == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+
+        if (response.getDescription() != null) {
+            out.name("description").beginObject().name("text").value(response.getDescription().getText()).endObject();
+        }
+
+        Players players = response.getPlayers();
+
+        if (players != null) {
+            out.name("players").beginObject();
+            out.name("max").value(players.getMax());
+            out.name("online").value(players.getOnline());
+
+            if (players.getSample() != null) {
+                out.name("sample").beginArray();
+
+                for (Player player : players.getSample()) {
+                    out.beginObject().name("name").value(player.getName()).name("id").value(player.getId()).endObject();
+                }
+
+                out.endArray();
+            }
+
+            out.endObject();
+        }
+
+        if (response.getVersion() != null) {
+            out.name("version").beginObject()
+                    .name("name").value(response.getVersion().getName())
+                    .name("protocol").value(response.getVersion().getProtocol())
+                    .endObject();
+        }
+
+        if (response.getFavicon() != null) {
+            out.name("favicon").value(response.getFavicon());
+        }
+
+        out.endObject();
+    }
+
+    private static Description readDescription(final JsonReader in) throws IOException {
+
+        if (skipNull(in)) {
+            return null;
+        }
+
+        Description description = new Description();
+
+        if (in.peek() != JsonToken.BEGIN_OBJECT) {
+
+            // For those versions that work with String MOTDs
+
+            description.setText(in.nextString());
+            return description;
+        }
+
+        // For those versions that work with TextComponent MOTDs
+
+        String text = null;
+        String extra = null;
+
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "text":
+                    text = readString(in);
+                    break;
+                case "extra":
+                    extra = MCPingChatRenderer.readLegacyText(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        in.endObject();
+
+        description.setText(extra != null ? extra : text);
+        return description;
+    }
+
+    private Players readPlayers(final JsonReader in) throws IOException {
+
+        if (skipNull(in)) {
+            return null;
+        }
+
+        Players players = new Players();
+
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "max":
+                    players.setMax(in.nextInt());
+                    break;
+                case "online":
+                    players.setOnline(in.nextInt());
+                    break;
+                case "sample":
+                    if (this.fields.contains(MCPingField.PLAYER_SAMPLE)) {
+                        players.setSample(readSample(in));
+                    } else {
+                        in.skipValue();
+                    }
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        in.endObject();
+
+        return players;
+    }
+
+    private static List<Player> readSample(final JsonReader in) throws IOException {
+
+        if (skipNull(in)) {
+            return null;
+        }
+
+        List<Player> sample = new ArrayList<>();
+
+        in.beginArray();
+
+        while (in.hasNext()) {
+            Player player = new Player();
+
+            in.beginObject();
+
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        player.setName(readString(in));
+                        break;
+                    case "id":
+                        player.setId(readString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+
+            in.endObject();
+
+            sample.add(player);
+        }
+
+        in.endArray();
+
+        return sample;
+    }
+
+    private static Version readVersion(final JsonReader in) throws IOException {
+
+        if (skipNull(in)) {
+            return null;
+        }
+
+        Version version = new Version();
+
+        in.beginObject();
+
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "name":
+                    version.setName(readString(in));
+                    break;
+                case "protocol":
+                    version.setProtocol(in.nextInt());
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+
+        in.endObject();
+
+        return version;
+    }
+
+    private static String readString(final JsonReader in) throws IOException {
+        return skipNull(in) ? null : in.nextString();
+    }
+
+    private static boolean skipNull(final JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+}
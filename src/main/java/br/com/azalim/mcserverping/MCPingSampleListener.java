@@ -0,0 +1,43 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+
+/**
+ * Receives the round trip samples of a {@link MCPingMonitor}.
+ * <p>
+ * Callbacks run on the monitor's thread, so they must be quick and must not throw.
+ */
+@FunctionalInterface
+public interface MCPingSampleListener {
+
+    /**
+     * A pong was received.
+     *
+     * @param nanos - time between sending the ping and receiving the pong
+     */
+    void onSample(long nanos);
+
+    /**
+     * The status response was received, once when the monitor starts and again every time it
+     * has to request the status to reconnect.
+     *
+     * @param response - the decoded status, without ping and timings
+     */
+    default void onStatus(MCPingResponse response) {
+    }
+
+    /**
+     * The server closed the connection and the monitor opened a new one.
+     */
+    default void onReconnect() {
+    }
+
+    /**
+     * The monitor stopped.
+     *
+     * @param cause - the error that stopped it, null if it was closed
+     */
+    default void onClose(IOException cause) {
+    }
+
+}
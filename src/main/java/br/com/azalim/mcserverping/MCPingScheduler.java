@@ -0,0 +1,363 @@
+package br.com.azalim.mcserverping;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pings registered targets at their own intervals through a {@link MCPingClient} and delivers
+ * the results to {@link MCPingSubscriber}s.
+ * <p>
+ * Targets are kept on a hashed timing wheel driven by a single thread. Each target gets a fixed
+ * phase within its interval, derived from the hash of its {@link MCPingTarget}, so thousands of
+ * targets sharing an interval are spread evenly over it instead of firing together, and keep the
+ * same phase across restarts. Targets that fail are backed off exponentially, up to
+ * {@link MCPingSchedulerOptions#getMaxBackoff()}, and return to their interval on the next
+ * success. Targets that come due while {@link MCPingSchedulerOptions#getMaxInFlight()} pings are
+ * running wait in a queue for a free slot.
+ * <p>
+ * The client is not owned by the scheduler and stays open when the scheduler is closed.
+ */
+public class MCPingScheduler implements Closeable {
+
+    private final MCPingClient client;
+    private final long tickNanos;
+    private final long maxBackoffTicks;
+    private final int maxInFlight;
+    private final Thread thread;
+
+    private final List<Entry>[] wheel;
+    private final int mask;
+    private final Queue<Entry> ready = new ArrayDeque<>();
+
+    private final Map<MCPingTarget, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    private final List<MCPingSubscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile boolean closed;
+    private volatile int waiting;
+    private long tick;
+
+    public MCPingScheduler(final MCPingClient client) {
+        this(client, MCPingSchedulerOptions.builder().build());
+    }
+
+    public MCPingScheduler(final MCPingClient client, final MCPingSchedulerOptions options) {
+        if (options.getTick() <= 0) {
+            throw new IllegalArgumentException("tick must be positive.");
+        }
+
+        if (options.getWheelSize() <= 0) {
+            throw new IllegalArgumentException("wheelSize must be positive.");
+        }
+
+        if (options.getMaxInFlight() <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be positive.");
+        }
+
+        int size = Integer.highestOneBit(options.getWheelSize() - 1) << 1;
+        size = Math.max(size, 1);
+
+        this.client = client;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(options.getTick());
+        this.maxBackoffTicks = Math.max(1, options.getMaxBackoff() / options.getTick());
+        this.maxInFlight = options.getMaxInFlight();
+        this.wheel = newWheel(size);
+        this.mask = size - 1;
+
+        this.thread = new Thread(this::run, "MCPingScheduler");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Starts pinging a target every interval, replacing its previous registration if any.
+     *
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @param interval - time between pings
+     * @param unit - unit of the interval
+     * @return the {@link MCPingTarget} the registration is keyed by
+     */
+    public MCPingTarget register(final MCPingOptions options, final long interval, final TimeUnit unit) {
+
+        Objects.requireNonNull(options.getHostname(), "Hostname cannot be null.");
+
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive.");
+        }
+
+        MCPingTarget target = MCPingTarget.of(options);
+        long ticks = Math.max(1, (unit.toNanos(interval) + this.tickNanos - 1) / this.tickNanos);
+        Entry entry = new Entry(target, options, ticks);
+        Entry previous = this.entries.put(target, entry);
+
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+
+        this.incoming.add(entry);
+        LockSupport.unpark(this.thread);
+        return target;
+    }
+
+    /**
+     * Stops pinging a target. A ping already in flight still completes and is delivered.
+     *
+     * @param target - the target to stop pinging
+     * @return whether the target was registered
+     */
+    public boolean unregister(final MCPingTarget target) {
+        Entry entry = this.entries.remove(target);
+
+        if (entry == null) {
+            return false;
+        }
+
+        entry.cancelled = true;
+        return true;
+    }
+
+    /**
+     * Subscribers run on the client's selector thread. An exception thrown by one goes to that
+     * thread's uncaught exception handler and does not affect the other subscribers or the
+     * schedule of the target.
+     *
+     * @param subscriber - receives the result of every scheduled ping
+     */
+    public void subscribe(final MCPingSubscriber subscriber) {
+        this.subscribers.add(subscriber);
+    }
+
+    /**
+     * @param subscriber - a previously subscribed {@link MCPingSubscriber}
+     * @return whether the subscriber was subscribed
+     */
+    public boolean unsubscribe(final MCPingSubscriber subscriber) {
+        return this.subscribers.remove(subscriber);
+    }
+
+    /**
+     * @return Number of registered targets
+     */
+    public int getTargets() {
+        return this.entries.size();
+    }
+
+    /**
+     * @return Number of scheduled pings currently running
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * @return Number of due targets waiting for a free in-flight slot
+     */
+    public int getWaiting() {
+        return this.waiting;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        LockSupport.unpark(this.thread);
+
+        if (Thread.currentThread() != this.thread) {
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+
+        while (!this.closed) {
+            Entry entry;
+
+            while ((entry = this.incoming.poll()) != null) {
+                if (entry.cancelled) {
+                    continue;
+                }
+
+                if (entry.due == -1) {
+                    // New registration, placed at its phase within the first interval
+                    this.schedule(entry, this.tick + 1 + phase(entry.target, entry.interval));
+                } else {
+                    this.reschedule(entry);
+                }
+            }
+
+            long now = (System.nanoTime() - start) / this.tickNanos;
+
+            while (this.tick < now) {
+                this.expire(++this.tick);
+            }
+
+            this.dispatch();
+
+            LockSupport.parkNanos(this, start + (this.tick + 1) * this.tickNanos - System.nanoTime());
+        }
+    }
+
+    private void schedule(final Entry entry, final long due) {
+        entry.due = Math.max(due, this.tick + 1);
+        this.wheel[(int) (entry.due & this.mask)].add(entry);
+    }
+
+    private void reschedule(final Entry entry) {
+        long delay = entry.interval;
+
+        if (entry.failures > 0) {
+            delay = entry.failures >= 62 || delay > this.maxBackoffTicks >> entry.failures
+                    ? this.maxBackoffTicks
+                    : Math.min(delay << entry.failures, this.maxBackoffTicks);
+            delay = Math.max(delay, entry.interval);
+        }
+
+        // Keep the phase: the next ping is due relative to the previous due tick, not completion
+        long due = entry.due + delay;
+
+        if (due <= this.tick) {
+            due += ((this.tick - due) / entry.interval + 1) * entry.interval;
+        }
+
+        this.schedule(entry, due);
+    }
+
+    private void expire(final long tick) {
+        Iterator<Entry> iterator = this.wheel[(int) (tick & this.mask)].iterator();
+
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+
+            if (entry.cancelled) {
+                iterator.remove();
+            } else if (entry.due <= tick) {
+                iterator.remove();
+                this.ready.add(entry);
+            }
+        }
+
+        this.waiting = this.ready.size();
+    }
+
+    private void dispatch() {
+        Entry entry;
+
+        while (this.inFlight.get() < this.maxInFlight && (entry = this.ready.poll()) != null) {
+            if (entry.cancelled) {
+                continue;
+            }
+
+            this.inFlight.incrementAndGet();
+
+            Entry ping = entry;
+            this.client.ping(entry.options).whenComplete((response, ex) -> this.complete(ping, response, ex));
+        }
+
+        this.waiting = this.ready.size();
+    }
+
+    private void complete(final Entry entry, final MCPingResponse response, final Throwable ex) {
+        this.inFlight.decrementAndGet();
+
+        try {
+            if (ex == null) {
+                entry.failures = 0;
+
+                for (MCPingSubscriber subscriber : this.subscribers) {
+                    try {
+                        subscriber.onResponse(entry.target, response);
+                    } catch (RuntimeException e) {
+                        uncaught(e);
+                    }
+                }
+            } else {
+                Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                IOException error = cause instanceof IOException
+                        ? (IOException) cause
+                        : new MCPingException(MCPingFailure.IO, "Ping failed.", cause);
+                MCPingFailure failure = MCPingFailure.of(error);
+
+                entry.failures++;
+
+                for (MCPingSubscriber subscriber : this.subscribers) {
+                    try {
+                        subscriber.onFailure(entry.target, failure, error);
+                    } catch (RuntimeException e) {
+                        uncaught(e);
+                    }
+                }
+            }
+        } finally {
+            // Back on the wheel whatever happened, or the target would never be pinged again
+            this.incoming.add(entry);
+            LockSupport.unpark(this.thread);
+        }
+    }
+
+    /**
+     * Hands a subscriber failure to the uncaught exception handler of the current thread, since
+     * the future stage it runs in would swallow it.
+     */
+    private static void uncaught(final RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Entry>[] newWheel(final int size) {
+        List<Entry>[] wheel = (List<Entry>[]) new List<?>[size];
+
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+
+        return wheel;
+    }
+
+    /**
+     * @return the tick offset of the target within its interval, stable for a given target
+     */
+    private static long phase(final MCPingTarget target, final long interval) {
+        long hash = target.hashCode() * 0x9E3779B97F4A7C15L;
+        hash ^= hash >>> 32;
+        return Math.floorMod(hash, interval);
+    }
+
+    private static final class Entry {
+
+        private final MCPingTarget target;
+        private final MCPingOptions options;
+        private final long interval;
+
+        private volatile boolean cancelled;
+        private volatile int failures;
+        private long due = -1;
+
+        private Entry(final MCPingTarget target, final MCPingOptions options, final long interval) {
+            this.target = target;
+            this.options = options;
+            this.interval = interval;
+        }
+
+    }
+
+}
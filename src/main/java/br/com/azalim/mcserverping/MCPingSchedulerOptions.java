@@ -0,0 +1,42 @@
+package br.com.azalim.mcserverping;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Storage class for {@link MCPingScheduler} options.
+ */
+@Builder
+public class MCPingSchedulerOptions {
+
+    /**
+     * @return Duration of a timing wheel tick in milliseconds, the scheduling resolution
+     */
+    @Getter
+    @Builder.Default
+    private long tick = 100;
+
+    /**
+     * @return Number of slots of the timing wheel, rounded up to a power of two
+     */
+    @Getter
+    @Builder.Default
+    private int wheelSize = 1024;
+
+    /**
+     * @return Maximum number of pings the scheduler keeps in flight at once, across all targets
+     */
+    @Getter
+    @Builder.Default
+    private int maxInFlight = 512;
+
+    /**
+     * @return Longest delay in milliseconds between two pings of a target that keeps failing
+     */
+    @Getter
+    @Builder.Default
+    private long maxBackoff = TimeUnit.MINUTES.toMillis(30);
+
+}
@@ -0,0 +1,290 @@
+package br.com.azalim.mcserverping;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Deterministic split of targets across poller nodes, by rendezvous (highest random weight)
+ * hashing.
+ * <p>
+ * Each target is owned by the node with the highest score for it, the score being a 64-bit hash
+ * of the node id and the normalized {@link MCPingTarget}. Every node computes the same assignment
+ * from the same membership, with no coordination. Targets are spread evenly over the nodes and,
+ * when a node joins or leaves, only the targets it gains or loses move: about {@code 1/n} of them.
+ * <p>
+ * Instances are immutable and describe one membership. {@link #handoff(MCPingSharding, Iterable)}
+ * compares two of them to tell which targets move between which nodes.
+ */
+@ToString
+public final class MCPingSharding {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * @return Ids of the member nodes, sorted
+     */
+    @Getter
+    private final List<String> nodes;
+
+    @ToString.Exclude
+    private final long[] seeds;
+
+    /**
+     * @param nodes - ids of the member nodes, duplicates are ignored
+     */
+    public MCPingSharding(final Collection<String> nodes) {
+        TreeSet<String> sorted = new TreeSet<>();
+
+        for (String node : nodes) {
+            sorted.add(Objects.requireNonNull(node, "Node id cannot be null."));
+        }
+
+        if (sorted.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required.");
+        }
+
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(sorted));
+        this.seeds = new long[this.nodes.size()];
+
+        for (int i = 0; i < this.seeds.length; i++) {
+            byte[] id = this.nodes.get(i).getBytes(StandardCharsets.UTF_8);
+            this.seeds[i] = mix(fnv(FNV_OFFSET_BASIS, id));
+        }
+    }
+
+    /**
+     * @param target - target to place
+     * @return id of the node that owns the target
+     */
+    public String owner(final MCPingTarget target) {
+        return this.nodes.get(this.ownerIndex(hash(target)));
+    }
+
+    /**
+     * @param node - id of a node
+     * @param target - target to place
+     * @return whether the node owns the target
+     */
+    public boolean owns(final String node, final MCPingTarget target) {
+        return this.owner(target).equals(node);
+    }
+
+    /**
+     * @param node - id of a node, which does not need to be a member
+     * @param targets - the whole target list
+     * @return the targets the node owns, in list order, none if it is not a member
+     */
+    public List<MCPingTarget> owned(final String node, final Iterable<MCPingTarget> targets) {
+        List<MCPingTarget> owned = new ArrayList<>();
+        int index = Collections.binarySearch(this.nodes, node);
+
+        if (index < 0) {
+            return owned;
+        }
+
+        for (MCPingTarget target : targets) {
+            if (this.ownerIndex(hash(target)) == index) {
+                owned.add(target);
+            }
+        }
+
+        return owned;
+    }
+
+    /**
+     * @param targets - the whole target list
+     * @return the targets of every node, in list order, keyed by node id in membership order
+     */
+    public Map<String, List<MCPingTarget>> assign(final Iterable<MCPingTarget> targets) {
+        Map<String, List<MCPingTarget>> assignment = new LinkedHashMap<>();
+
+        for (String node : this.nodes) {
+            assignment.put(node, new ArrayList<>());
+        }
+
+        for (MCPingTarget target : targets) {
+            assignment.get(this.owner(target)).add(target);
+        }
+
+        return assignment;
+    }
+
+    /**
+     * Compares the owners of the targets under this membership and under the next one.
+     *
+     * @param next - sharding of the new membership
+     * @param targets - the whole target list
+     * @return the targets that change owner
+     */
+    public Handoff handoff(final MCPingSharding next, final Iterable<MCPingTarget> targets) {
+        List<Move> moves = new ArrayList<>();
+        int total = 0;
+
+        for (MCPingTarget target : targets) {
+            long hash = hash(target);
+            String from = this.nodes.get(this.ownerIndex(hash));
+            String to = next.nodes.get(next.ownerIndex(hash));
+
+            if (!from.equals(to)) {
+                moves.add(new Move(target, from, to));
+            }
+
+            total++;
+        }
+
+        return new Handoff(Collections.unmodifiableList(moves), total);
+    }
+
+    private int ownerIndex(final long hash) {
+        int owner = 0;
+        long best = mix(hash ^ this.seeds[0]);
+
+        for (int i = 1; i < this.seeds.length; i++) {
+            long score = mix(hash ^ this.seeds[i]);
+
+            // Ties go to the first node in id order, so every node breaks them the same way
+            if (Long.compareUnsigned(score, best) > 0) {
+                best = score;
+                owner = i;
+            }
+        }
+
+        return owner;
+    }
+
+    /**
+     * @param target - target to hash
+     * @return FNV-1a hash of the UTF-8 hostname, a zero separator and the big-endian port
+     */
+    private static long hash(final MCPingTarget target) {
+        long hash = fnv(FNV_OFFSET_BASIS, target.getHostname().getBytes(StandardCharsets.UTF_8));
+        hash *= FNV_PRIME; // Zero separator byte
+        hash = (hash ^ ((target.getPort() >>> 8) & 0xff)) * FNV_PRIME;
+        return (hash ^ (target.getPort() & 0xff)) * FNV_PRIME;
+    }
+
+    private static long fnv(long hash, final byte[] data) {
+        for (byte b : data) {
+            hash = (hash ^ (b & 0xff)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    /**
+     * SplitMix64 finalizer, spreads every input bit over the whole score.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * A target that changes owner between two memberships.
+     */
+    @Getter
+    @ToString
+    public static final class Move {
+
+        /**
+         * @return Target that moves
+         */
+        private final MCPingTarget target;
+
+        /**
+         * @return Id of the node that owned the target
+         */
+        private final String from;
+
+        /**
+         * @return Id of the node that owns the target now
+         */
+        private final String to;
+
+        Move(final MCPingTarget target, final String from, final String to) {
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+    }
+
+    /**
+     * The targets that change owner between two memberships, see
+     * {@link MCPingSharding#handoff(MCPingSharding, Iterable)}.
+     */
+    @Getter
+    @ToString
+    public static final class Handoff {
+
+        /**
+         * @return Every target that changes owner, in list order
+         */
+        @ToString.Exclude
+        private final List<Move> moves;
+
+        /**
+         * @return Number of targets compared
+         */
+        private final int total;
+
+        Handoff(final List<Move> moves, final int total) {
+            this.moves = moves;
+            this.total = total;
+        }
+
+        /**
+         * @param node - id of a node
+         * @return the targets the node starts polling
+         */
+        public List<MCPingTarget> getAcquired(final String node) {
+            List<MCPingTarget> acquired = new ArrayList<>();
+
+            for (Move move : this.moves) {
+                if (move.to.equals(node)) {
+                    acquired.add(move.target);
+                }
+            }
+
+            return acquired;
+        }
+
+        /**
+         * @param node - id of a node
+         * @return the targets the node stops polling
+         */
+        public List<MCPingTarget> getReleased(final String node) {
+            List<MCPingTarget> released = new ArrayList<>();
+
+            for (Move move : this.moves) {
+                if (move.from.equals(node)) {
+                    released.add(move.target);
+                }
+            }
+
+            return released;
+        }
+
+        /**
+         * @return Number of targets that change owner
+         */
+        @ToString.Include(name = "moved")
+        public int getMoved() {
+            return this.moves.size();
+        }
+
+    }
+
+}
@@ -0,0 +1,290 @@
+package br.com.azalim.mcserverping;
+
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * {@link MCPingResolver} that looks up {@code _minecraft._tcp} SRV records and keeps the answers
+ * in a size-bounded LRU cache. Every record of an answer is kept, and handed out in RFC 2782
+ * order on each resolution.
+ * <p>
+ * Positive answers are kept for the smallest TTL of the returned records (capped at
+ * {@link #getMaxTtl()}). Hosts without an SRV record are remembered for {@link #getNegativeTtl()}
+ * so they don't cost a DNS round trip on every ping. Transient failures are never cached.
+ */
+@Builder
+public class MCPingSrvResolver implements MCPingResolver {
+
+    /**
+     * Resolver shared by every {@link MCPingOptions} that doesn't supply its own.
+     */
+    public static final MCPingSrvResolver DEFAULT = MCPingSrvResolver.builder().build();
+
+    private static final String SRV_QUERY_PREFIX = "_minecraft._tcp.%s";
+
+    /**
+     * @return Maximum number of hostnames kept in the cache, 0 disables caching
+     */
+    @Getter
+    @Builder.Default
+    private final int maxSize = 10_000;
+
+    /**
+     * @return Upper bound for the time a positive answer is cached, in seconds
+     */
+    @Getter
+    @Builder.Default
+    private final long maxTtl = TimeUnit.HOURS.toSeconds(1);
+
+    /**
+     * @return Time an empty or NXDOMAIN answer is cached, in seconds
+     */
+    @Getter
+    @Builder.Default
+    private final long negativeTtl = TimeUnit.MINUTES.toSeconds(5);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final Map<String, CachedAnswer> cache = new LinkedHashMap<String, CachedAnswer>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, CachedAnswer> eldest) {
+            if (this.size() > MCPingSrvResolver.this.maxSize) {
+                MCPingSrvResolver.this.evictions.increment();
+                return true;
+            }
+            return false;
+        }
+
+    };
+
+    @Override
+    public InetSocketAddress resolve(final String hostname, final int port) {
+        return this.resolveAll(hostname, port).get(0);
+    }
+
+    /**
+     * Orders the SRV targets per RFC 2782: by ascending priority, and by a weighted random
+     * selection among targets of the same priority, so load spreads as the weights ask for.
+     *
+     * @throws UncheckedIOException wrapping a {@link MCPingException} of
+     *         {@link MCPingFailure#RESOLVE} if the hostname is not a valid DNS name
+     */
+    @Override
+    public List<InetSocketAddress> resolveAll(final String hostname, final int port) {
+
+        String key = hostname.toLowerCase(Locale.ROOT);
+        long now = System.nanoTime();
+
+        CachedAnswer entry;
+
+        synchronized (this.cache) {
+            entry = this.cache.get(key);
+
+            if (entry != null && now - entry.expiresAt >= 0) {
+                this.cache.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry != null) {
+            this.hits.increment();
+        } else {
+            this.misses.increment();
+            entry = this.lookup(hostname, now);
+
+            if (entry != null && this.maxSize > 0) {
+                synchronized (this.cache) {
+                    this.cache.put(key, entry);
+                }
+            }
+        }
+
+        if (entry == null || entry.records.length == 0) {
+            return Collections.singletonList(InetSocketAddress.createUnresolved(hostname, port));
+        }
+
+        return order(entry.records);
+    }
+
+    /**
+     * @return Number of resolutions answered from the cache
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    /**
+     * @return Number of resolutions that needed a DNS lookup
+     */
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    /**
+     * @return Number of entries dropped to honour {@link #getMaxSize()}
+     */
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return Number of hostnames currently cached, expired ones included
+     */
+    public int getSize() {
+        synchronized (this.cache) {
+            return this.cache.size();
+        }
+    }
+
+    /**
+     * Drops every cached answer.
+     */
+    public void clear() {
+        synchronized (this.cache) {
+            this.cache.clear();
+        }
+    }
+
+    /**
+     * @return the answer to cache, or null if the lookup failed transiently
+     */
+    private CachedAnswer lookup(final String hostname, final long now) {
+
+        Lookup lookup;
+
+        try {
+            lookup = new Lookup(String.format(SRV_QUERY_PREFIX, hostname), Type.SRV);
+        } catch (TextParseException e) {
+            throw new UncheckedIOException(new MCPingException(MCPingFailure.RESOLVE,
+                    "Invalid hostname " + hostname + ".", e));
+        }
+
+        Record[] records = lookup.run();
+
+        if (records == null || records.length == 0) {
+            int result = lookup.getResult();
+
+            if (result == Lookup.HOST_NOT_FOUND || result == Lookup.TYPE_NOT_FOUND
+                    || result == Lookup.SUCCESSFUL) {
+                return new CachedAnswer(new SrvRecord[0], now + TimeUnit.SECONDS.toNanos(this.negativeTtl));
+            }
+
+            return null;
+        }
+
+        List<SrvRecord> targets = new ArrayList<>(records.length);
+        long ttl = this.maxTtl;
+
+        for (Record record : records) {
+            SRVRecord srv = (SRVRecord) record;
+            String target = srv.getTarget().toString().replaceFirst("\\.$", "");
+
+            ttl = Math.min(ttl, srv.getTTL());
+
+            // A "." target means the service is decidedly not available there
+            if (!target.isEmpty()) {
+                targets.add(new SrvRecord(target, srv.getPort(), srv.getPriority(), srv.getWeight()));
+            }
+        }
+
+        // Sorted once here, so only the weighted shuffle is left for each resolution
+        targets.sort(Comparator.comparingInt(record -> record.priority));
+
+        return new CachedAnswer(targets.toArray(new SrvRecord[0]), now + TimeUnit.SECONDS.toNanos(ttl));
+    }
+
+    /**
+     * @param records - SRV records sorted by priority
+     * @return the addresses of the records in RFC 2782 order
+     */
+    private static List<InetSocketAddress> order(final SrvRecord[] records) {
+
+        List<InetSocketAddress> addresses = new ArrayList<>(records.length);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        for (int start = 0, end; start < records.length; start = end) {
+            int priority = records[start].priority;
+            List<SrvRecord> group = new ArrayList<>();
+            int weights = 0;
+
+            for (end = start; end < records.length && records[end].priority == priority; end++) {
+                // Zero-weight records go first, so they keep a small chance of being selected
+                if (records[end].weight == 0) {
+                    group.add(0, records[end]);
+                } else {
+                    group.add(records[end]);
+                }
+                weights += records[end].weight;
+            }
+
+            while (!group.isEmpty()) {
+                int selected = random.nextInt(weights + 1);
+                int sum = 0;
+                int index = 0;
+
+                while (index < group.size() - 1 && (sum += group.get(index).weight) < selected) {
+                    index++;
+                }
+
+                SrvRecord record = group.remove(index);
+                weights -= record.weight;
+                addresses.add(InetSocketAddress.createUnresolved(record.target, record.port));
+            }
+        }
+
+        return addresses;
+    }
+
+    private static final class SrvRecord {
+
+        private final String target;
+        private final int port;
+        private final int priority;
+        private final int weight;
+
+        private SrvRecord(final String target, final int port, final int priority, final int weight) {
+            this.target = target;
+            this.port = port;
+            this.priority = priority;
+            this.weight = weight;
+        }
+
+    }
+
+    private static final class CachedAnswer {
+
+        private final SrvRecord[] records;
+        private final long expiresAt;
+
+        private CachedAnswer(final SrvRecord[] records, final long expiresAt) {
+            this.records = records;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,32 @@
+package br.com.azalim.mcserverping;
+
+import java.io.IOException;
+
+/**
+ * Receives the results of the pings made by a {@link MCPingScheduler}.
+ * <p>
+ * Callbacks run on the thread completing the ping, which is the selector thread of the
+ * {@link MCPingClient}, so they must be quick and must not throw.
+ */
+@FunctionalInterface
+public interface MCPingSubscriber {
+
+    /**
+     * A scheduled ping succeeded.
+     *
+     * @param target - target that was pinged
+     * @param response - the response
+     */
+    void onResponse(MCPingTarget target, MCPingResponse response);
+
+    /**
+     * A scheduled ping failed. The target is backed off until it answers again.
+     *
+     * @param target - target that was pinged
+     * @param failure - type of the failure
+     * @param cause - the error
+     */
+    default void onFailure(MCPingTarget target, MCPingFailure failure, IOException cause) {
+    }
+
+}
@@ -0,0 +1,61 @@
+package br.com.azalim.mcserverping;
+
+import java.util.Locale;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * Normalized identity of a pinged server: the lower-cased hostname, without a trailing dot, and
+ * the port, as given in {@link MCPingOptions} before any SRV resolution.
+ */
+@Getter
+@EqualsAndHashCode
+public final class MCPingTarget {
+
+    /**
+     * @return Normalized hostname
+     */
+    private final String hostname;
+
+    /**
+     * @return Port
+     */
+    private final int port;
+
+    private MCPingTarget(final String hostname, final int port) {
+        this.hostname = hostname;
+        this.port = port;
+    }
+
+    /**
+     * @param hostname - hostname or IP address of the server
+     * @param port - port of the server
+     * @return the normalized {@link MCPingTarget}
+     */
+    public static MCPingTarget of(final String hostname, final int port) {
+        String normalized = hostname.trim().toLowerCase(Locale.ROOT);
+
+        if (normalized.endsWith(".")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+
+        return new MCPingTarget(normalized, port);
+    }
+
+    /**
+     * @param options - a filled instance of {@link MCPingOptions}
+     * @return the normalized {@link MCPingTarget} of the options
+     */
+    public static MCPingTarget of(final MCPingOptions options) {
+        return of(options.getHostname(), options.getPort());
+    }
+
+    @Override
+    public String toString() {
+        return this.hostname.indexOf(':') == -1
+                ? this.hostname + ':' + this.port
+                : '[' + this.hostname + "]:" + this.port;
+    }
+
+}
@@ -0,0 +1,161 @@
+package br.com.azalim.mcserverping;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Derives connect and read timeouts of each target from its past round trips, the way TCP derives
+ * its retransmission timeout (RFC 6298).
+ * <p>
+ * A smoothed round trip time and its variance are kept per target and per phase, and the timeout
+ * of a phase is the smoothed time plus four times the variance, clamped between
+ * {@link #getMinTimeout()} and the fixed timeout of the {@link MCPingOptions}. A target that was
+ * never pinged uses the fixed timeouts. Every timeout doubles the timeouts of its target until the
+ * next successful ping, so a target that slowed down is not cut off over and over.
+ * <p>
+ * An estimator is shared by setting it on the {@link MCPingOptions} of every target, see
+ * {@link MCPingOptions#getTimeoutEstimator()}. {@link MCPingClient} can also hedge requests with
+ * it, see {@link MCPingClientOptions#isHedge()}.
+ */
+@Builder
+public class MCPingTimeoutEstimator {
+
+    private static final int MAX_BACKOFF = 6;
+
+    /**
+     * @return Lower bound of the derived timeouts, in milliseconds
+     */
+    @Getter
+    @Builder.Default
+    private final int minTimeout = 200;
+
+    private final Map<MCPingTarget, Estimates> estimates = new ConcurrentHashMap<>();
+
+    /**
+     * @param target - the target
+     * @param fallback - fixed timeout in milliseconds, used as the upper bound, 0 for none
+     * @return the connect timeout of the target in milliseconds
+     */
+    public int getConnectTimeout(final MCPingTarget target, final int fallback) {
+        Estimates estimates = this.estimates.get(target);
+        return estimates == null ? fallback : timeout(estimates.connect, estimates.backoff, this.minTimeout, fallback);
+    }
+
+    /**
+     * @param target - the target
+     * @param fallback - fixed timeout in milliseconds, used as the upper bound, 0 for none
+     * @return the read timeout of the target in milliseconds
+     */
+    public int getReadTimeout(final MCPingTarget target, final int fallback) {
+        Estimates estimates = this.estimates.get(target);
+        return estimates == null ? fallback : timeout(estimates.read, estimates.backoff, this.minTimeout, fallback);
+    }
+
+    /**
+     * Unlike the timeouts, the hedge delay is not bounded by {@link #getMinTimeout()}: a second
+     * attempt costs one more connection, not a lost answer.
+     *
+     * @param target - the target
+     * @return Time in milliseconds after which a ping of the target, from connecting to the pong,
+     *         is slower than usual, or -1 if the target was never pinged
+     */
+    public long getHedgeDelay(final MCPingTarget target) {
+        Estimates estimates = this.estimates.get(target);
+        return estimates == null ? -1 : timeout(estimates.exchange, estimates.backoff, 0, 0);
+    }
+
+    /**
+     * Feeds the timings of a successful ping into the estimates of its target.
+     *
+     * @param target - target that answered
+     * @param timings - timings of the ping
+     */
+    public void record(final MCPingTarget target, final MCPingTimings timings) {
+        Estimates estimates = this.estimates.computeIfAbsent(target, key -> new Estimates());
+
+        synchronized (estimates) {
+            estimates.connect.sample(timings.getConnect());
+            estimates.read.sample(Math.max(timings.getStatus(), timings.getPong()));
+            estimates.exchange.sample(timings.getConnect() + timings.getStatus() + timings.getDecode()
+                    + timings.getPong());
+            estimates.backoff = 0;
+        }
+    }
+
+    /**
+     * Backs off the timeouts of a target that timed out.
+     *
+     * @param target - target that timed out
+     */
+    public void timedOut(final MCPingTarget target) {
+        Estimates estimates = this.estimates.get(target);
+
+        if (estimates != null) {
+            synchronized (estimates) {
+                estimates.backoff = Math.min(estimates.backoff + 1, MAX_BACKOFF);
+            }
+        }
+    }
+
+    /**
+     * Drops the estimates of a target, so it goes back to the fixed timeouts.
+     *
+     * @param target - the target
+     */
+    public void forget(final MCPingTarget target) {
+        this.estimates.remove(target);
+    }
+
+    /**
+     * @return Number of targets with estimates
+     */
+    public int getSize() {
+        return this.estimates.size();
+    }
+
+    private static int timeout(final Estimate estimate, final int backoff, final int min, final int fallback) {
+        long timeout;
+
+        synchronized (estimate) {
+            timeout = TimeUnit.NANOSECONDS.toMillis(estimate.smoothed + 4 * estimate.variance) + 1;
+        }
+
+        timeout = Math.max(timeout << backoff, min);
+        return (int) (fallback > 0 ? Math.min(timeout, fallback) : Math.min(timeout, Integer.MAX_VALUE));
+    }
+
+    private static final class Estimates {
+
+        private final Estimate connect = new Estimate();
+        private final Estimate read = new Estimate();
+        private final Estimate exchange = new Estimate();
+        private volatile int backoff;
+
+    }
+
+    private static final class Estimate {
+
+        private long smoothed;
+        private long variance;
+        private boolean sampled;
+
+        private synchronized void sample(final long rtt) {
+            if (!this.sampled) {
+                this.smoothed = rtt;
+                this.variance = rtt / 2;
+                this.sampled = true;
+                return;
+            }
+
+            // RTTVAR <- 3/4 RTTVAR + 1/4 |SRTT - R|, then SRTT <- 7/8 SRTT + 1/8 R
+            this.variance += (Math.abs(this.smoothed - rtt) - this.variance) / 4;
+            this.smoothed += (rtt - this.smoothed) / 8;
+        }
+
+    }
+
+}
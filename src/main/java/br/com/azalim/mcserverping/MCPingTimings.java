@@ -0,0 +1,49 @@
+package br.com.azalim.mcserverping;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Time spent in each phase of a ping, measured with {@link System#nanoTime()}. All values are in
+ * nanoseconds.
+ */
+@Getter
+@Setter(value = AccessLevel.PACKAGE)
+@ToString
+public class MCPingTimings {
+
+    /**
+     * @return Time spent resolving the SRV record and the address to connect to
+     */
+    private long resolve;
+
+    /**
+     * @return Time spent establishing the TCP connection
+     */
+    private long connect;
+
+    /**
+     * @return Time between sending the handshake and receiving the whole status response
+     */
+    private long status;
+
+    /**
+     * @return Time spent decoding the status response payload
+     */
+    private long decode;
+
+    /**
+     * @return Round trip of the ping packet, from sending it to receiving the pong
+     */
+    private long pong;
+
+    /**
+     * @return Sum of every phase
+     */
+    public long getTotal() {
+        return this.resolve + this.connect + this.status + this.decode + this.pong;
+    }
+
+}
@@ -31,7 +31,7 @@ package br.com.azalim.mcserverping;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.regex.Pattern;
+import java.nio.ByteBuffer;
 
 public class MCPingUtil {
 
@@ -41,22 +41,80 @@ public class MCPingUtil {
     public static final int STATUS_HANDSHAKE = 1;
 
     public static final char COLOR_CHAR = '\u00A7';
-    private static final Pattern STRIP_COLOR_PATTERN = Pattern
-            .compile("(?i)" + COLOR_CHAR + "([0-9A-FK-ORX]|#[0-9A-Fa-f]{3,6})");
 
     /**
      * Strips the given message of all color codes
+     * <p>
+     * Removes {@code §} followed by a color or format code ({@code 0-9}, {@code a-f},
+     * {@code k-o}, {@code r}, or {@code x}, in either case), which covers the {@code §x§R§R§G§G§B§B}
+     * hex sequences too, and {@code §#} followed by 3 to 6 hex digits.
      *
      * @param input String to strip of color
      * @return A copy of the input string, without any coloring
      */
     public static String stripColors(final String input) {
-        return input == null ? null : STRIP_COLOR_PATTERN.matcher(input).replaceAll("");
+
+        if (input == null) {
+            return null;
+        }
+
+        int index = input.indexOf(COLOR_CHAR);
+
+        if (index == -1) {
+            return input;
+        }
+
+        int length = input.length();
+        StringBuilder output = new StringBuilder(length);
+        output.append(input, 0, index);
+
+        while (index < length) {
+            char c = input.charAt(index);
+
+            if (c == COLOR_CHAR && index + 1 < length) {
+                char code = input.charAt(index + 1);
+
+                if (isColorCode(code)) {
+                    index += 2;
+                    continue;
+                }
+
+                if (code == '#') {
+                    int digits = 0;
+
+                    while (digits < 6 && index + 2 + digits < length
+                            && isHexDigit(input.charAt(index + 2 + digits))) {
+                        digits++;
+                    }
+
+                    if (digits >= 3) {
+                        index += 2 + digits;
+                        continue;
+                    }
+                }
+            }
+
+            output.append(c);
+            index++;
+        }
+
+        return output.toString();
+    }
+
+    private static boolean isColorCode(final char code) {
+        return (code >= '0' && code <= '9')
+                || (code >= 'a' && code <= 'f') || (code >= 'A' && code <= 'F')
+                || (code >= 'k' && code <= 'o') || (code >= 'K' && code <= 'O')
+                || code == 'r' || code == 'R' || code == 'x' || code == 'X';
+    }
+
+    private static boolean isHexDigit(final char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
     }
 
     public static void io(final boolean b, final String m) throws IOException {
         if (b) {
-            throw new IOException(m);
+            throw new MCPingException(MCPingFailure.PROTOCOL, m);
         }
     }
 
@@ -69,7 +127,7 @@ public class MCPingUtil {
             i |= (k & 0x7F) << j++ * 7;
 
             if (j > 5) {
-                throw new RuntimeException("VarInt too big");
+                throw new MCPingException(MCPingFailure.PROTOCOL, "VarInt too big");
             }
 
             if ((k & 0x80) != 128) {
@@ -92,4 +150,56 @@ public class MCPingUtil {
         }
     }
 
+    /**
+     * Reads a VarInt from the buffer's current position.
+     *
+     * @param in - buffer holding the whole VarInt
+     * @return the decoded value
+     * @throws IOException if the VarInt is longer than 5 bytes
+     */
+    public static int readVarInt(ByteBuffer in) throws IOException {
+        int value = 0;
+
+        for (int i = 0; i < 5; i++) {
+            byte b = in.get();
+            value |= (b & 0x7F) << i * 7;
+
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+
+        throw new MCPingException(MCPingFailure.PROTOCOL, "VarInt too big");
+    }
+
+    /**
+     * Writes a VarInt at the buffer's current position.
+     *
+     * @param out - buffer with at least {@link #getVarIntSize(int)} bytes remaining
+     * @param paramInt - the value to write
+     */
+    public static void writeVarInt(ByteBuffer out, int paramInt) {
+        while ((paramInt & 0xFFFFFF80) != 0) {
+            out.put((byte) (paramInt & 0x7F | 0x80));
+            paramInt >>>= 7;
+        }
+
+        out.put((byte) paramInt);
+    }
+
+    /**
+     * @param paramInt - the value to measure
+     * @return the number of bytes the value takes once encoded as a VarInt
+     */
+    public static int getVarIntSize(int paramInt) {
+        int size = 1;
+
+        while ((paramInt & 0xFFFFFF80) != 0) {
+            paramInt >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+
 }
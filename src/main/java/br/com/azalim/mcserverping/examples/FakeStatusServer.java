@@ -0,0 +1,545 @@
+package br.com.azalim.mcserverping.examples;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.JsonObject;
+
+import br.com.azalim.mcserverping.MCPingUtil;
+import lombok.Builder;
+
+/**
+ * In-process Minecraft status server for capacity testing, bound on the loopback interface.
+ * <p>
+ * It speaks the handshake, status and ping exchange {@link br.com.azalim.mcserverping.MCPing}
+ * implements from a single selector thread, and can be told to answer slowly, send large
+ * payloads, send malformed packets or stall at a given point of the exchange.
+ *
+ * <pre>
+ * try (FakeStatusServer server = FakeStatusServer.builder().latency(20).faviconSize(16384).build().start()) {
+ *     MCPing.getPing(MCPingOptions.builder().hostname("127.0.0.1").port(server.getPort()).build());
+ * }
+ * </pre>
+ */
+public class FakeStatusServer implements Closeable {
+
+    /**
+     * Ways the server can break the protocol when answering the status request.
+     */
+    public enum Malformed {
+
+        /**
+         * Answer correctly
+         */
+        NONE,
+
+        /**
+         * Answer with an unexpected packet id
+         */
+        BAD_PACKET_ID,
+
+        /**
+         * Answer with a payload that is not valid JSON
+         */
+        BAD_JSON,
+
+        /**
+         * Send half of the status response, then close the connection
+         */
+        TRUNCATED,
+
+        /**
+         * Announce a status response of almost 2 GB, then close the connection
+         */
+        HUGE_LENGTH,
+
+        /**
+         * Send a VarInt longer than 5 bytes
+         */
+        BAD_VARINT
+
+    }
+
+    /**
+     * Points of the exchange where the server can stop answering, keeping the connection open.
+     */
+    public enum Stall {
+
+        /**
+         * Never stall
+         */
+        NONE,
+
+        /**
+         * Never answer the status request
+         */
+        BEFORE_STATUS,
+
+        /**
+         * Send half of the status response, then nothing
+         */
+        MID_STATUS,
+
+        /**
+         * Answer the status request but never the ping
+         */
+        BEFORE_PONG
+
+    }
+
+    private final int port;
+    private final long latency;
+    private final Malformed malformed;
+    private final Stall stall;
+    private final boolean keepAlive;
+    private final boolean requireStatus;
+    private final byte[] status;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong statuses = new AtomicLong();
+    private final AtomicLong pongs = new AtomicLong();
+
+    private final PriorityQueue<Scheduled> scheduled = new PriorityQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * @param port - port to bind, 0 picks a free one
+     * @param latency - delay before each answer, in milliseconds
+     * @param json - status response to send, generated from the other settings if null
+     * @param payloadSize - minimum size of the generated status response, padded through the MOTD
+     * @param faviconSize - size of the generated favicon image before base64 encoding, 0 for none
+     * @param online - online player count of the generated status response
+     * @param max - maximum player count of the generated status response
+     * @param malformed - how to break the status response, {@link Malformed#NONE} if null
+     * @param stall - where to stall, {@link Stall#NONE} if null
+     * @param keepAlive - whether to keep the connection open after the pong instead of closing it
+     *            like vanilla servers do
+     * @param requireStatus - whether to disconnect clients that ping before requesting the status,
+     *            like BungeeCord does
+     */
+    @Builder
+    private FakeStatusServer(final int port, final long latency, final String json, final int payloadSize,
+            final int faviconSize, final int online, final int max, final Malformed malformed, final Stall stall,
+            final boolean keepAlive, final boolean requireStatus) {
+        this.port = port;
+        this.latency = latency;
+        this.malformed = malformed == null ? Malformed.NONE : malformed;
+        this.stall = stall == null ? Stall.NONE : stall;
+        this.keepAlive = keepAlive;
+        this.requireStatus = requireStatus;
+        this.status = encodeStatus(this.malformed, json != null ? json
+                : generateJson(payloadSize, faviconSize, online, max));
+    }
+
+    /**
+     * Binds the server and starts answering.
+     *
+     * @return this server
+     * @throws IOException if the port cannot be bound
+     */
+    public FakeStatusServer start() throws IOException {
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), this.port), 4096);
+        this.server.configureBlocking(false);
+        this.server.register(this.selector, SelectionKey.OP_ACCEPT);
+
+        this.thread = new Thread(this::run, "FakeStatusServer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+        return this;
+    }
+
+    /**
+     * @return the port the server is bound to
+     */
+    public int getPort() {
+        return this.server.socket().getLocalPort();
+    }
+
+    /**
+     * @return Number of connections accepted
+     */
+    public long getAccepted() {
+        return this.accepted.get();
+    }
+
+    /**
+     * @return Number of status responses sent
+     */
+    public long getStatuses() {
+        return this.statuses.get();
+    }
+
+    /**
+     * @return Number of pongs sent
+     */
+    public long getPongs() {
+        return this.pongs.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.closed = true;
+
+        if (this.selector != null) {
+            this.selector.wakeup();
+
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        try {
+            while (!this.closed) {
+                Scheduled next = this.scheduled.peek();
+                long now = System.currentTimeMillis();
+
+                if (next == null) {
+                    this.selector.select();
+                } else if (next.time > now) {
+                    this.selector.select(next.time - now);
+                } else {
+                    this.selector.selectNow();
+                }
+
+                Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (key.isAcceptable()) {
+                            this.accept();
+                        } else if (key.isReadable()) {
+                            ((Connection) key.attachment()).read();
+                        } else if (key.isWritable()) {
+                            ((Connection) key.attachment()).flush();
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() != null) {
+                            ((Connection) key.attachment()).close();
+                        }
+                    }
+                }
+
+                now = System.currentTimeMillis();
+
+                while ((next = this.scheduled.peek()) != null && next.time <= now) {
+                    this.scheduled.poll();
+
+                    try {
+                        next.connection.send(next.data, next.closeAfter);
+                    } catch (IOException e) {
+                        next.connection.close();
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+        } finally {
+            for (SelectionKey key : this.selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException ignored) {
+                }
+            }
+
+            try {
+                this.selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+
+        while ((channel = this.server.accept()) != null) {
+            this.accepted.incrementAndGet();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+        }
+    }
+
+    private void answerStatus(final Connection connection) {
+        if (this.stall == Stall.BEFORE_STATUS) {
+            return;
+        }
+
+        this.statuses.incrementAndGet();
+
+        ByteBuffer data = ByteBuffer.wrap(this.status);
+        boolean half = this.stall == Stall.MID_STATUS || this.malformed == Malformed.TRUNCATED
+                || this.malformed == Malformed.HUGE_LENGTH;
+
+        if (half) {
+            data.limit(this.malformed == Malformed.HUGE_LENGTH ? Math.min(this.status.length, 64)
+                    : this.status.length / 2);
+        }
+
+        this.schedule(connection, data, half && this.stall != Stall.MID_STATUS);
+    }
+
+    private void answerPing(final Connection connection, final ByteBuffer ping) {
+        if (this.stall == Stall.BEFORE_PONG) {
+            return;
+        }
+
+        this.pongs.incrementAndGet();
+        this.schedule(connection, ping, !this.keepAlive);
+    }
+
+    private void schedule(final Connection connection, final ByteBuffer data, final boolean closeAfter) {
+        this.scheduled.add(new Scheduled(System.currentTimeMillis() + this.latency, connection, data, closeAfter));
+    }
+
+    private static String generateJson(final int payloadSize, final int faviconSize, final int online, final int max) {
+        JsonObject json = new JsonObject();
+
+        JsonObject version = new JsonObject();
+        version.addProperty("name", "FakeStatusServer");
+        version.addProperty("protocol", 4);
+        json.add("version", version);
+
+        JsonObject players = new JsonObject();
+        players.addProperty("max", max);
+        players.addProperty("online", online);
+        json.add("players", players);
+
+        JsonObject description = new JsonObject();
+        description.addProperty("text", MCPingUtil.COLOR_CHAR + "aA Minecraft Server");
+        json.add("description", description);
+
+        if (faviconSize > 0) {
+            byte[] image = new byte[faviconSize];
+            new Random(faviconSize).nextBytes(image);
+            json.addProperty("favicon", "data:image/png;base64," + Base64.getEncoder().encodeToString(image));
+        }
+
+        int padding = payloadSize - json.toString().length();
+
+        if (padding > 0) {
+            StringBuilder text = new StringBuilder(description.get("text").getAsString());
+
+            for (int i = 0; i < padding; i++) {
+                text.append('.');
+            }
+
+            description.addProperty("text", text.toString());
+        }
+
+        return json.toString();
+    }
+
+    private static byte[] encodeStatus(final Malformed malformed, final String json) {
+        String text = malformed == Malformed.BAD_JSON ? "{\"description\":" : json;
+        byte[] payload = text.getBytes(StandardCharsets.UTF_8);
+
+        if (malformed == Malformed.BAD_VARINT) {
+            return new byte[] { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF };
+        }
+
+        int huge = Integer.MAX_VALUE - 16;
+        int stringLength = malformed == Malformed.HUGE_LENGTH ? huge - 6 : payload.length;
+        int packetSize = 1 + MCPingUtil.getVarIntSize(stringLength) + payload.length;
+        int frameSize = malformed == Malformed.HUGE_LENGTH ? huge : packetSize;
+
+        ByteBuffer status = ByteBuffer.allocate(MCPingUtil.getVarIntSize(frameSize) + packetSize);
+        MCPingUtil.writeVarInt(status, frameSize);
+        status.put(malformed == Malformed.BAD_PACKET_ID ? (byte) 0x05 : MCPingUtil.PACKET_STATUSREQUEST);
+        MCPingUtil.writeVarInt(status, stringLength);
+        status.put(payload);
+
+        return status.array();
+    }
+
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer in = ByteBuffer.allocate(512);
+        private final Queue<ByteBuffer> out = new ArrayDeque<>();
+
+        private SelectionKey key;
+        private boolean handshaken;
+        private boolean statusRequested;
+        private boolean closeAfterFlush;
+
+        private Connection(final SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void read() throws IOException {
+            if (this.channel.read(this.in) == -1) {
+                this.close();
+                return;
+            }
+
+            this.in.flip();
+
+            while (this.in.hasRemaining()) {
+                this.in.mark();
+
+                int length;
+
+                try {
+                    length = readFrameLength(this.in);
+                } catch (IOException e) {
+                    this.close();
+                    return;
+                }
+
+                // A frame that can never fit the buffer would stall the connection for good
+                if (length > this.in.capacity()) {
+                    this.close();
+                    return;
+                }
+
+                if (length == -1 || this.in.remaining() < length) {
+                    this.in.reset();
+                    break;
+                }
+
+                ByteBuffer frame = this.in.slice();
+                frame.limit(length);
+                this.in.position(this.in.position() + length);
+
+                if (!this.handshaken) {
+                    // < Handshake
+                    this.handshaken = true;
+                } else if (length > 0 && frame.get(0) == MCPingUtil.PACKET_STATUSREQUEST) {
+                    // < Status request
+                    this.statusRequested = true;
+                    FakeStatusServer.this.answerStatus(this);
+                } else if (length > 0 && frame.get(0) == MCPingUtil.PACKET_PING
+                        && (this.statusRequested || !FakeStatusServer.this.requireStatus)) {
+                    // < Ping, echoed back as is
+                    ByteBuffer pong = ByteBuffer.allocate(MCPingUtil.getVarIntSize(length) + length);
+                    MCPingUtil.writeVarInt(pong, length);
+                    pong.put(frame);
+                    pong.flip();
+                    FakeStatusServer.this.answerPing(this, pong);
+                } else {
+                    this.close();
+                    return;
+                }
+            }
+
+            this.in.compact();
+
+            if (!this.in.hasRemaining()) {
+                this.close();
+            }
+        }
+
+        private void send(final ByteBuffer data, final boolean closeAfter) throws IOException {
+            this.out.add(data);
+            this.closeAfterFlush |= closeAfter;
+            this.flush();
+        }
+
+        private void flush() throws IOException {
+            ByteBuffer data;
+
+            while ((data = this.out.peek()) != null) {
+                this.channel.write(data);
+
+                if (data.hasRemaining()) {
+                    this.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+
+                this.out.poll();
+            }
+
+            if (this.closeAfterFlush) {
+                this.close();
+            } else if (this.key.isValid()) {
+                this.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void close() {
+            try {
+                this.channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+    }
+
+    private static final class Scheduled implements Comparable<Scheduled> {
+
+        private final long time;
+        private final Connection connection;
+        private final ByteBuffer data;
+        private final boolean closeAfter;
+
+        private Scheduled(final long time, final Connection connection, final ByteBuffer data,
+                final boolean closeAfter) {
+            this.time = time;
+            this.connection = connection;
+            this.data = data;
+            this.closeAfter = closeAfter;
+        }
+
+        @Override
+        public int compareTo(final Scheduled other) {
+            return Long.compare(this.time, other.time);
+        }
+
+    }
+
+    /**
+     * @return the length of the frame at the buffer's position, consuming its prefix, or -1 if the
+     *         prefix is incomplete
+     */
+    private static int readFrameLength(final ByteBuffer buffer) throws IOException {
+        int value = 0;
+
+        for (int i = 0; i < 5; i++) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            byte b = buffer.get();
+            value |= (b & 0x7F) << i * 7;
+
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Negative frame length");
+                }
+                return value;
+            }
+        }
+
+        throw new IOException("VarInt too big");
+    }
+
+}
@@ -0,0 +1,122 @@
+package br.com.azalim.mcserverping.examples;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import br.com.azalim.mcserverping.MCPingClient;
+import br.com.azalim.mcserverping.MCPingClientOptions;
+import br.com.azalim.mcserverping.MCPingFailure;
+import br.com.azalim.mcserverping.MCPingHistogram;
+import br.com.azalim.mcserverping.MCPingMetrics;
+import br.com.azalim.mcserverping.MCPingOptions;
+
+/**
+ * Drives a fixed rate of pings against a {@link FakeStatusServer} and reports the achieved
+ * throughput and latency percentiles.
+ * <p>
+ * Pings are sent on schedule whether or not earlier ones have completed, and latency is measured
+ * from the scheduled send time, so queueing inside the client shows up in the results.
+ * <p>
+ * Usage: {@code MCPingLoadGenerator [pingsPerSecond] [seconds] [latencyMillis] [faviconSize] [maxInFlight]}
+ */
+public class MCPingLoadGenerator {
+
+    public static void main(String[] args) throws IOException {
+
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int latency = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        int faviconSize = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        int maxInFlight = args.length > 4 ? Integer.parseInt(args[4]) : 1024;
+
+        MCPingMetrics metrics = new MCPingMetrics();
+        MCPingHistogram endToEnd = new MCPingHistogram();
+
+        FakeStatusServer.FakeStatusServerBuilder builder = FakeStatusServer.builder()
+                .latency(latency)
+                .faviconSize(faviconSize);
+        MCPingClientOptions clientOptions = MCPingClientOptions.builder().maxInFlight(maxInFlight).build();
+
+        try (FakeStatusServer server = builder.build().start();
+                MCPingClient client = new MCPingClient(clientOptions)) {
+
+            MCPingOptions options = MCPingOptions.builder()
+                    .hostname("127.0.0.1")
+                    .port(server.getPort())
+                    .resolver(InetSocketAddress::createUnresolved)
+                    .listener(metrics)
+                    .build();
+
+            System.out.println(String.format(
+                    "Sending %d pings/s for %d s to port %d (latency %d ms, favicon %d bytes, %d in flight)",
+                    rate, seconds, server.getPort(), latency, faviconSize, maxInFlight));
+
+            long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+            long total = (long) rate * seconds;
+            long start = System.nanoTime();
+
+            CompletableFuture<?> last = CompletableFuture.completedFuture(null);
+
+            for (long i = 0; i < total; i++) {
+                long scheduled = start + i * interval;
+                long wait = scheduled - System.nanoTime();
+
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                last = client.ping(options).whenComplete((response, ex) -> {
+                    if (ex == null) {
+                        endToEnd.record(System.nanoTime() - scheduled);
+                    }
+                });
+            }
+
+            // The client completes pings roughly in order, the last one is a good enough barrier
+            last.handle((response, ex) -> null).join();
+
+            while (metrics.getSucceeded() + metrics.getFailed() < metrics.getStarted()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            System.out.println();
+            System.out.println(String.format("Elapsed: %.2f s", elapsed));
+            System.out.println(String.format("Throughput: %.1f pings/s", metrics.getSucceeded() / elapsed));
+            System.out.println(String.format("Succeeded: %d", metrics.getSucceeded()));
+
+            for (MCPingFailure failure : MCPingFailure.values()) {
+                if (metrics.getFailed(failure) > 0) {
+                    System.out.println(String.format("Failed (%s): %d", failure, metrics.getFailed(failure)));
+                }
+            }
+
+            System.out.println();
+            print("End to end", endToEnd);
+            print("Ping", metrics.getTotal());
+            print("Connect", metrics.getConnect());
+            print("Status", metrics.getStatus());
+            print("Pong", metrics.getPong());
+            System.out.println();
+            System.out.println(String.format("Server: %d accepted, %d statuses, %d pongs",
+                    server.getAccepted(), server.getStatuses(), server.getPongs()));
+        }
+
+    }
+
+    private static void print(final String name, final MCPingHistogram histogram) {
+        System.out.println(String.format(
+                "%-11s p50 %8.3f ms   p90 %8.3f ms   p99 %8.3f ms   p99.9 %8.3f ms   max %8.3f ms",
+                name + ":",
+                histogram.getPercentile(50) / 1e6,
+                histogram.getPercentile(90) / 1e6,
+                histogram.getPercentile(99) / 1e6,
+                histogram.getPercentile(99.9) / 1e6,
+                histogram.getMax() / 1e6));
+    }
+
+}
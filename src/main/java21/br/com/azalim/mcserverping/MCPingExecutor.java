@@ -0,0 +1,48 @@
+package br.com.azalim.mcserverping;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the blocking pings of {@link MCPing#pingAll(java.util.Collection, int)}.
+ * <p>
+ * Java 21 version of this class, selected through the multi-release jar. Every ping runs on its
+ * own virtual thread, and a {@link Semaphore} caps how many of them do I/O at once. The ping path
+ * holds no monitor while it blocks on the socket, so the virtual threads unmount from their
+ * carriers instead of pinning them.
+ */
+final class MCPingExecutor {
+
+    private MCPingExecutor() {
+    }
+
+    /**
+     * Starts every task without waiting for them to finish.
+     *
+     * @param tasks - tasks to run
+     * @param maxConcurrency - maximum number of tasks running at once
+     */
+    static void executeAll(final List<Runnable> tasks, final int maxConcurrency) {
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("MCPing-", 1).factory());
+
+        for (Runnable task : tasks) {
+            executor.execute(() -> {
+                permits.acquireUninterruptibly();
+
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        }
+
+        executor.shutdown();
+    }
+
+}
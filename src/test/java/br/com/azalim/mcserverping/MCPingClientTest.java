@@ -0,0 +1,227 @@
+package br.com.azalim.mcserverping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.azalim.mcserverping.examples.FakeStatusServer;
+
+class MCPingClientTest {
+
+    @Test
+    void pingsManyTargetsConcurrently() throws Exception {
+        try (FakeStatusServer server = FakeStatusServer.builder().online(7).latency(20).build().start();
+                MCPingClient client = new MCPingClient(MCPingClientOptions.builder().maxInFlight(16).build())) {
+
+            List<CompletableFuture<MCPingResponse>> futures = new ArrayList<>();
+
+            for (int i = 0; i < 64; i++) {
+                futures.add(client.ping(options(server).build()));
+            }
+
+            for (CompletableFuture<MCPingResponse> future : futures) {
+                MCPingResponse response = future.get(10, TimeUnit.SECONDS);
+                assertEquals(7, response.getPlayers().getOnline());
+                assertEquals(server.getPort(), response.getPort());
+            }
+
+            assertEquals(64, server.getPongs());
+        }
+    }
+
+    @Test
+    void timesOutWhenTheServerStalls() throws Exception {
+        try (FakeStatusServer server = FakeStatusServer.builder()
+                .stall(FakeStatusServer.Stall.BEFORE_PONG)
+                .build()
+                .start();
+                MCPingClient client = new MCPingClient()) {
+
+            Throwable cause = failure(client.ping(options(server).readTimeout(200).build()));
+            assertInstanceOf(SocketTimeoutException.class, cause);
+            assertEquals(MCPingFailure.TIMEOUT, MCPingFailure.of(cause));
+        }
+    }
+
+    @Test
+    void rejectsResponsesLargerThanMaxResponseBytes() throws Exception {
+        try (FakeStatusServer server = FakeStatusServer.builder().payloadSize(64 * 1024).build().start();
+                MCPingClient client = new MCPingClient()) {
+
+            Throwable cause = failure(client.ping(options(server).maxResponseBytes(16 * 1024).build()));
+            assertEquals(MCPingFailure.PROTOCOL, MCPingFailure.of(cause));
+
+            // Grown read buffers still decode the whole response
+            MCPingResponse response = client.ping(options(server).maxResponseBytes(128 * 1024).build())
+                    .get(10, TimeUnit.SECONDS);
+            assertTrue(response.getDescription().getText().length() > 60 * 1024);
+        }
+    }
+
+    @Test
+    void reportsMalformedPacketsAsProtocolFailures() throws Exception {
+        try (FakeStatusServer server = FakeStatusServer.builder()
+                .malformed(FakeStatusServer.Malformed.BAD_PACKET_ID)
+                .build()
+                .start();
+                MCPingClient client = new MCPingClient()) {
+
+            assertEquals(MCPingFailure.PROTOCOL, MCPingFailure.of(failure(client.ping(options(server).build()))));
+        }
+    }
+
+    @Test
+    void hedgedPingIsReportedOnce() throws Exception {
+        CountingListener listener = new CountingListener();
+
+        try (FakeStatusServer server = FakeStatusServer.builder().latency(150).build().start();
+                MCPingClient client = new MCPingClient(MCPingClientOptions.builder().hedge(true).build())) {
+
+            CountingEstimator estimator = new CountingEstimator();
+            MCPingOptions options = options(server).timeoutEstimator(estimator).listener(listener).build();
+
+            for (int i = 0; i < 3; i++) {
+                // Teaches the estimator that the target usually answers within a few milliseconds
+                estimator.prime(MCPingTarget.of(options));
+                client.ping(options).get(10, TimeUnit.SECONDS);
+            }
+
+            assertTrue(client.getHedged() > 0, "No ping was hedged.");
+            assertEquals(3, listener.connected.get());
+            assertEquals(3, listener.status.get());
+            assertEquals(3, listener.pongs.get());
+            assertEquals(0, estimator.timeouts.get());
+        }
+    }
+
+    @Test
+    void hedgedTimeoutBacksOffOnce() throws Exception {
+        CountingListener listener = new CountingListener();
+
+        try (FakeStatusServer server = FakeStatusServer.builder()
+                .stall(FakeStatusServer.Stall.BEFORE_STATUS)
+                .build()
+                .start();
+                MCPingClient client = new MCPingClient(MCPingClientOptions.builder().hedge(true).build())) {
+
+            CountingEstimator estimator = new CountingEstimator();
+            MCPingOptions options = options(server).timeoutEstimator(estimator).listener(listener).build();
+            estimator.prime(MCPingTarget.of(options));
+
+            assertInstanceOf(SocketTimeoutException.class, failure(client.ping(options)));
+            assertEquals(1, client.getHedged());
+            assertEquals(1, estimator.timeouts.get());
+            assertEquals(1, listener.failures.get());
+        }
+    }
+
+    @Test
+    void closeFailsQueuedResolutions() throws Exception {
+        MCPingResolver slow = new MCPingResolver() {
+
+            @Override
+            public InetSocketAddress resolve(final String hostname, final int port) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new InetSocketAddress("127.0.0.1", port);
+            }
+
+        };
+
+        MCPingClient client = new MCPingClient(MCPingClientOptions.builder().resolverThreads(1).build());
+        List<CompletableFuture<MCPingResponse>> futures = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            futures.add(client.ping(MCPingOptions.builder().hostname("queued").port(1).resolver(slow).build()));
+        }
+
+        client.close();
+
+        for (CompletableFuture<MCPingResponse> future : futures) {
+            assertInstanceOf(IOException.class, failure(future));
+        }
+    }
+
+    private static Throwable failure(final CompletableFuture<MCPingResponse> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+
+    private static MCPingOptions.MCPingOptionsBuilder options(final FakeStatusServer server) {
+        return MCPingOptions.builder().hostname("127.0.0.1").port(server.getPort()).timeout(2000).readTimeout(2000);
+    }
+
+    private static final class CountingEstimator extends MCPingTimeoutEstimator {
+
+        private final AtomicInteger timeouts = new AtomicInteger();
+
+        private CountingEstimator() {
+            // Keeps the read timeout well above the server latency, the hedge delay is not bounded by it
+            super(500);
+        }
+
+        private void prime(final MCPingTarget target) {
+            MCPingTimings timings = new MCPingTimings();
+            timings.setConnect(TimeUnit.MILLISECONDS.toNanos(1));
+            timings.setStatus(TimeUnit.MILLISECONDS.toNanos(1));
+            timings.setPong(TimeUnit.MILLISECONDS.toNanos(1));
+
+            for (int i = 0; i < 5; i++) {
+                this.record(target, timings);
+            }
+        }
+
+        @Override
+        public void timedOut(final MCPingTarget target) {
+            this.timeouts.incrementAndGet();
+            super.timedOut(target);
+        }
+
+    }
+
+    private static final class CountingListener implements MCPingListener {
+
+        private final AtomicInteger connected = new AtomicInteger();
+        private final AtomicInteger status = new AtomicInteger();
+        private final AtomicInteger pongs = new AtomicInteger();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void onConnected(final MCPingOptions options, final long nanos) {
+            this.connected.incrementAndGet();
+        }
+
+        @Override
+        public void onStatus(final MCPingOptions options, final long nanos) {
+            this.status.incrementAndGet();
+        }
+
+        @Override
+        public void onPong(final MCPingOptions options, final MCPingResponse response) {
+            this.pongs.incrementAndGet();
+        }
+
+        @Override
+        public void onFailure(final MCPingOptions options, final MCPingFailure failure, final IOException cause) {
+            this.failures.incrementAndGet();
+        }
+
+    }
+
+}
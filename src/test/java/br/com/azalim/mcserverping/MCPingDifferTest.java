@@ -0,0 +1,141 @@
+package br.com.azalim.mcserverping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.azalim.mcserverping.MCPingChange.Type;
+
+class MCPingDifferTest {
+
+    private static final MCPingTarget TARGET = MCPingTarget.of("mc.example.com", 25565);
+
+    @Test
+    void firstResponseIsOnline() {
+        MCPingDiffer differ = new MCPingDiffer(change -> { });
+
+        assertEquals(Arrays.asList(Type.ONLINE), types(differ.update(TARGET, response(10, 100, "motd"))));
+        assertTrue(differ.isOnline(TARGET));
+    }
+
+    @Test
+    void unchangedResponseHasNoChanges() {
+        MCPingDiffer differ = new MCPingDiffer(change -> { });
+        differ.update(TARGET, response(10, 100, "motd"));
+
+        assertTrue(differ.update(TARGET, response(10, 100, "motd")).isEmpty());
+    }
+
+    @Test
+    void changesAreReportedInTypeOrder() {
+        MCPingDiffer differ = new MCPingDiffer(change -> { });
+        differ.update(TARGET, response(10, 100, "motd"));
+
+        List<MCPingChange> changes = differ.update(TARGET, response(13, 200, "new motd"));
+
+        assertEquals(Arrays.asList(Type.PLAYERS_ONLINE, Type.PLAYERS_MAX, Type.DESCRIPTION), types(changes));
+        assertEquals(3, changes.get(0).getDelta());
+        assertEquals(100, changes.get(1).getDelta());
+    }
+
+    @Test
+    void goesOfflineAfterConsecutiveFailures() {
+        MCPingDiffer differ = new MCPingDiffer(3, change -> { });
+        differ.update(TARGET, response(10, 100, "motd"));
+
+        assertTrue(differ.fail(TARGET, MCPingFailure.TIMEOUT).isEmpty());
+        assertTrue(differ.fail(TARGET, MCPingFailure.TIMEOUT).isEmpty());
+
+        List<MCPingChange> changes = differ.fail(TARGET, MCPingFailure.CONNECT);
+        assertEquals(Arrays.asList(Type.OFFLINE), types(changes));
+        assertEquals(MCPingFailure.CONNECT, changes.get(0).getFailure());
+        assertFalse(differ.isOnline(TARGET));
+
+        // Already offline
+        assertTrue(differ.fail(TARGET, MCPingFailure.TIMEOUT).isEmpty());
+    }
+
+    @Test
+    void responseResetsFailures() {
+        MCPingDiffer differ = new MCPingDiffer(2, change -> { });
+        differ.update(TARGET, response(10, 100, "motd"));
+
+        differ.fail(TARGET, MCPingFailure.TIMEOUT);
+        differ.update(TARGET, response(10, 100, "motd"));
+
+        assertTrue(differ.fail(TARGET, MCPingFailure.TIMEOUT).isEmpty());
+        assertTrue(differ.isOnline(TARGET));
+    }
+
+    @Test
+    void comesBackOnlineWithTheChangesSinceItsLastResponse() {
+        MCPingDiffer differ = new MCPingDiffer(change -> { });
+        differ.update(TARGET, response(10, 100, "motd"));
+        differ.fail(TARGET, MCPingFailure.TIMEOUT);
+
+        List<MCPingChange> changes = differ.update(TARGET, response(0, 100, "motd"));
+
+        assertEquals(Arrays.asList(Type.ONLINE, Type.PLAYERS_ONLINE), types(changes));
+        assertEquals(-10, changes.get(1).getDelta());
+    }
+
+    @Test
+    void targetThatNeverAnsweredDoesNotGoOffline() {
+        MCPingDiffer differ = new MCPingDiffer(change -> { });
+
+        assertTrue(differ.fail(TARGET, MCPingFailure.RESOLVE).isEmpty());
+        assertTrue(differ.fail(TARGET, MCPingFailure.RESOLVE).isEmpty());
+        assertFalse(differ.isOnline(TARGET));
+    }
+
+    @Test
+    void forgottenTargetIsReportedAsNew() {
+        MCPingDiffer differ = new MCPingDiffer(change -> { });
+        differ.update(TARGET, response(10, 100, "motd"));
+        differ.forget(TARGET);
+
+        assertEquals(Arrays.asList(Type.ONLINE), types(differ.update(TARGET, response(12, 100, "motd"))));
+    }
+
+    @Test
+    void subscriberHandsChangesToTheListener() {
+        List<MCPingChange> received = new ArrayList<>();
+        MCPingDiffer differ = new MCPingDiffer(received::add);
+
+        differ.onResponse(TARGET, response(10, 100, "motd"));
+        differ.onFailure(TARGET, MCPingFailure.TIMEOUT, null);
+
+        assertEquals(Arrays.asList(Type.ONLINE, Type.OFFLINE), types(received));
+    }
+
+    private static MCPingResponse response(final int online, final int max, final String motd) {
+        MCPingResponse.Players players = new MCPingResponse.Players();
+        players.setOnline(online);
+        players.setMax(max);
+
+        MCPingResponse.Description description = new MCPingResponse.Description();
+        description.setText(motd);
+
+        MCPingResponse response = new MCPingResponse();
+        response.setPlayers(players);
+        response.setDescription(description);
+        return response;
+    }
+
+    private static List<Type> types(final List<MCPingChange> changes) {
+        List<Type> types = new ArrayList<>();
+
+        for (MCPingChange change : changes) {
+            types.add(change.getType());
+        }
+
+        return types;
+    }
+
+}
@@ -0,0 +1,279 @@
+package br.com.azalim.mcserverping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MCPingHistoryStoreTest {
+
+    private static final MCPingTarget[] TARGETS = new MCPingTarget[10];
+
+    static {
+        for (int i = 0; i < TARGETS.length; i++) {
+            TARGETS[i] = MCPingTarget.of("mc" + i + ".example.com", 25565);
+        }
+    }
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void scansARangeInTimestampOrder() throws IOException {
+        try (MCPingHistoryStore store = this.open(100)) {
+            fill(store, 1000);
+
+            List<MCPingHistoryStore.Record> records = scan(store, 2500, 3500);
+
+            assertEquals(100, records.size());
+            assertEquals(2500, records.get(0).getTimestamp());
+            assertEquals(3490, records.get(99).getTimestamp());
+        }
+    }
+
+    @Test
+    void targetScanMatchesFilteredFullScan() throws IOException {
+        try (MCPingHistoryStore store = this.open(64)) {
+            fill(store, 1000);
+
+            for (MCPingTarget target : TARGETS) {
+                assertEquals(strings(filtered(store, target, 1234, 8765)), strings(scan(store, target, 1234, 8765)));
+            }
+        }
+    }
+
+    @Test
+    void recordsSurviveReopening() throws IOException {
+        try (MCPingHistoryStore store = this.open(64)) {
+            fill(store, 1000);
+        }
+
+        try (MCPingHistoryStore store = this.open(64)) {
+            assertEquals(1000, store.getSize());
+            assertEquals(16, store.getSegments());
+
+            MCPingHistoryStore.Record record = scan(store, TARGETS[3], 0, 100).get(0);
+            assertEquals(30, record.getTimestamp());
+            assertEquals(3, record.getOnline());
+            assertEquals("motd 3", record.getDescription());
+
+            // Appends continue after the reopened records
+            store.appendOffline(20_000, TARGETS[0]);
+            assertEquals(1001, store.getSize());
+            assertThrows(IllegalArgumentException.class, () -> store.appendOffline(5, TARGETS[0]));
+        }
+    }
+
+    @Test
+    void missingIndexesAreRebuilt() throws IOException {
+        try (MCPingHistoryStore store = this.open(64)) {
+            fill(store, 1000);
+        }
+
+        List<Path> indexes = this.files(".idx");
+        assertEquals(15, indexes.size());
+
+        for (Path index : indexes) {
+            Files.delete(index);
+        }
+
+        try (MCPingHistoryStore store = this.open(64)) {
+            for (MCPingTarget target : TARGETS) {
+                assertEquals(strings(filtered(store, target, 0, 10_000)), strings(scan(store, target, 0, 10_000)));
+            }
+        }
+
+        assertEquals(15, this.files(".idx").size());
+    }
+
+    @Test
+    void crashCutsRecordsReferringToLostStrings() throws IOException {
+        try (MCPingHistoryStore store = this.open(64)) {
+            fill(store, 100);
+            store.append(5000, TARGETS[0], response(1, "last motd"));
+        }
+
+        // A crash lost the tail of the dictionary, the string interned last, but not the record
+        Path strings = this.directory.resolve("strings.dat");
+
+        try (FileChannel channel = FileChannel.open(strings, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (MCPingHistoryStore store = this.open(64)) {
+            assertEquals(100, store.getSize());
+            assertTrue(scan(store, 4000, 6000).isEmpty());
+
+            // The lost string id is given out again
+            store.append(6000, TARGETS[0], response(2, "new motd"));
+            assertEquals("new motd", scan(store, TARGETS[0], 6000, 7000).get(0).getDescription());
+        }
+
+        try (MCPingHistoryStore store = this.open(64)) {
+            assertEquals("new motd", scan(store, TARGETS[0], 6000, 7000).get(0).getDescription());
+        }
+    }
+
+    @Test
+    void reopeningWithLargerSegmentsDoesNotGrowSealedOnes() throws IOException {
+        try (MCPingHistoryStore store = this.open(64)) {
+            fill(store, 200);
+        }
+
+        long size = Files.size(this.files(".dat").get(0));
+
+        try (MCPingHistoryStore store = this.open(4096)) {
+            store.appendOffline(10_000, TARGETS[0]);
+        }
+
+        assertEquals(size, Files.size(this.files(".dat").get(0)));
+    }
+
+    @Test
+    void retentionDropsSegmentsAndCompactsStrings() throws IOException {
+        try (MCPingHistoryStore store = this.open(100)) {
+            // Every record has a description of its own, so the dictionary grows past the compaction threshold
+            for (int i = 0; i < 3000; i++) {
+                store.append(i * 10L, TARGETS[i % TARGETS.length], response(i, "motd " + i));
+            }
+
+            long size = Files.size(this.directory.resolve("strings.dat"));
+
+            assertEquals(20, store.deleteBefore(20_000));
+            assertEquals(1000, store.getSize());
+            assertTrue(Files.size(this.directory.resolve("strings.dat")) < size / 2);
+
+            MCPingHistoryStore.Record record = scan(store, TARGETS[5], 25_000, 25_100).get(0);
+            assertEquals("motd 2505", record.getDescription());
+        }
+
+        try (MCPingHistoryStore store = this.open(100)) {
+            assertEquals(1000, store.getSize());
+            assertEquals("motd 2999", scan(store, TARGETS[9], 29_990, 30_000).get(0).getDescription());
+        }
+    }
+
+    @Test
+    void downsamplesIntoBuckets() throws IOException {
+        try (MCPingHistoryStore store = this.open(64)) {
+            store.append(0, TARGETS[0], response(10, "motd"));
+            store.append(500, TARGETS[0], response(20, "motd"));
+            store.appendOffline(1000, TARGETS[0]);
+            store.append(1500, TARGETS[1], response(99, "other"));
+
+            List<MCPingHistoryStore.Bucket> buckets = store.downsample(TARGETS[0], 0, 2000, 1000);
+
+            assertEquals(2, buckets.size());
+            assertEquals(15, buckets.get(0).getMeanOnline());
+            assertEquals(1, buckets.get(0).getUptime());
+            assertEquals(0, buckets.get(1).getUptime());
+        }
+    }
+
+    @Test
+    void offlineRecordsHaveNoStrings() throws IOException {
+        try (MCPingHistoryStore store = this.open(64)) {
+            store.appendOffline(0, TARGETS[0]);
+
+            MCPingHistoryStore.Record record = scan(store, 0, 1).get(0);
+            assertTrue(record.isOffline());
+            assertNull(record.getDescription());
+        }
+    }
+
+    private MCPingHistoryStore open(final int segmentRecords) throws IOException {
+        return new MCPingHistoryStore(this.directory, MCPingHistoryStoreOptions.builder()
+                .segmentRecords(segmentRecords)
+                .build());
+    }
+
+    private List<Path> files(final String suffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "segment-*" + suffix)) {
+            stream.forEach(files::add);
+        }
+
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Appends a record every 10 ms, cycling through the targets.
+     */
+    private static void fill(final MCPingHistoryStore store, final int records) throws IOException {
+        for (int i = 0; i < records; i++) {
+            MCPingTarget target = TARGETS[i % TARGETS.length];
+
+            if (i % 7 == 6) {
+                store.appendOffline(i * 10L, target);
+            } else {
+                store.append(i * 10L, target, response(i % TARGETS.length, "motd " + i % TARGETS.length));
+            }
+        }
+    }
+
+    private static MCPingResponse response(final int online, final String motd) {
+        MCPingResponse.Players players = new MCPingResponse.Players();
+        players.setOnline(online);
+        players.setMax(100);
+
+        MCPingResponse.Description description = new MCPingResponse.Description();
+        description.setText(motd);
+
+        MCPingResponse response = new MCPingResponse();
+        response.setPlayers(players);
+        response.setDescription(description);
+        return response;
+    }
+
+    private static List<MCPingHistoryStore.Record> scan(final MCPingHistoryStore store, final long from,
+            final long to) {
+        List<MCPingHistoryStore.Record> records = new ArrayList<>();
+        store.scan(from, to, records::add);
+        return records;
+    }
+
+    private static List<MCPingHistoryStore.Record> scan(final MCPingHistoryStore store, final MCPingTarget target,
+            final long from, final long to) {
+        List<MCPingHistoryStore.Record> records = new ArrayList<>();
+        store.scan(target, from, to, records::add);
+        return records;
+    }
+
+    private static List<MCPingHistoryStore.Record> filtered(final MCPingHistoryStore store,
+            final MCPingTarget target, final long from, final long to) {
+        List<MCPingHistoryStore.Record> records = new ArrayList<>();
+
+        store.scan(from, to, record -> {
+            if (target.equals(record.getTarget())) {
+                records.add(record);
+            }
+        });
+
+        return records;
+    }
+
+    private static List<String> strings(final List<MCPingHistoryStore.Record> records) {
+        List<String> strings = new ArrayList<>();
+
+        for (MCPingHistoryStore.Record record : records) {
+            strings.add(record.toString());
+        }
+
+        return strings;
+    }
+
+}
@@ -0,0 +1,239 @@
+package br.com.azalim.mcserverping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xbill.DNS.Cache;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.SimpleResolver;
+
+class MCPingSrvResolverTest {
+
+    private FakeDnsServer dns;
+
+    @BeforeEach
+    void startDns() throws IOException {
+        this.dns = new FakeDnsServer();
+        this.dns.start();
+
+        SimpleResolver resolver = new SimpleResolver(
+                new InetSocketAddress(InetAddress.getLoopbackAddress(), this.dns.socket.getLocalPort()));
+        Lookup.setDefaultResolver(resolver);
+        Lookup.setDefaultCache(new Cache(DClass.IN), DClass.IN);
+        Lookup.setDefaultSearchPath(Collections.<Name>emptyList());
+    }
+
+    @AfterEach
+    void stopDns() {
+        this.dns.socket.close();
+        Lookup.refreshDefault();
+    }
+
+    @Test
+    void ordersByPriorityThenWeight() {
+        this.dns.answer(60, srv(10, 90, "heavy.example.test"), srv(10, 10, "light.example.test"),
+                srv(20, 50, "backup.example.test"));
+
+        MCPingSrvResolver resolver = MCPingSrvResolver.builder().build();
+        int heavyFirst = 0;
+
+        for (int i = 0; i < 2000; i++) {
+            List<InetSocketAddress> addresses = resolver.resolveAll("play.example.test", 25565);
+
+            assertEquals(3, addresses.size());
+            assertEquals("backup.example.test", addresses.get(2).getHostString());
+            assertEquals(25566, addresses.get(2).getPort());
+
+            if (addresses.get(0).getHostString().equals("heavy.example.test")) {
+                heavyFirst++;
+            }
+        }
+
+        // Picked first about 90% of the time
+        assertTrue(heavyFirst > 1650 && heavyFirst < 1950, "heavy first " + heavyFirst + " times out of 2000");
+        assertEquals(1, resolver.getMisses());
+        assertEquals(1999, resolver.getHits());
+    }
+
+    @Test
+    void zeroWeightRecordsAreRarelySelectedFirst() {
+        this.dns.answer(60, srv(10, 0, "spare.example.test"), srv(10, 100, "main.example.test"));
+
+        MCPingSrvResolver resolver = MCPingSrvResolver.builder().build();
+        int spareFirst = 0;
+
+        for (int i = 0; i < 1000; i++) {
+            List<InetSocketAddress> addresses = resolver.resolveAll("play.example.test", 25565);
+            assertEquals(2, addresses.size());
+
+            if (addresses.get(0).getHostString().equals("spare.example.test")) {
+                spareFirst++;
+            }
+        }
+
+        // A 1 in 101 chance per resolution
+        assertTrue(spareFirst < 50, "spare first " + spareFirst + " times out of 1000");
+    }
+
+    @Test
+    void answersExpireAfterTheirTtl() throws InterruptedException {
+        this.dns.answer(1, srv(10, 10, "mc.example.test"));
+
+        MCPingSrvResolver resolver = MCPingSrvResolver.builder().build();
+
+        resolver.resolveAll("play.example.test", 25565);
+        resolver.resolveAll("PLAY.example.test", 25565);
+        assertEquals(1, resolver.getMisses());
+        assertEquals(1, resolver.getHits());
+
+        Thread.sleep(1100);
+
+        resolver.resolveAll("play.example.test", 25565);
+        assertEquals(2, resolver.getMisses());
+    }
+
+    @Test
+    void ttlIsCappedByMaxTtl() throws InterruptedException {
+        this.dns.answer(3600, srv(10, 10, "mc.example.test"));
+
+        MCPingSrvResolver resolver = MCPingSrvResolver.builder().maxTtl(1).build();
+
+        resolver.resolveAll("play.example.test", 25565);
+        Thread.sleep(1100);
+        resolver.resolveAll("play.example.test", 25565);
+
+        assertEquals(2, resolver.getMisses());
+    }
+
+    @Test
+    void hostsWithoutSrvRecordFallBackAndAreRemembered() {
+        this.dns.answer(60);
+
+        MCPingSrvResolver resolver = MCPingSrvResolver.builder().build();
+
+        assertEquals(Arrays.asList(InetSocketAddress.createUnresolved("play.example.test", 25565)),
+                resolver.resolveAll("play.example.test", 25565));
+        resolver.resolveAll("play.example.test", 25565);
+
+        assertEquals(1, resolver.getMisses());
+        assertEquals(1, resolver.getHits());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedHost() {
+        this.dns.answer(60, srv(10, 10, "mc.example.test"));
+
+        MCPingSrvResolver resolver = MCPingSrvResolver.builder().maxSize(2).build();
+
+        resolver.resolveAll("a.example.test", 25565);
+        resolver.resolveAll("b.example.test", 25565);
+        resolver.resolveAll("a.example.test", 25565);
+        resolver.resolveAll("c.example.test", 25565);
+
+        assertEquals(1, resolver.getEvictions());
+        assertEquals(2, resolver.getSize());
+
+        resolver.resolveAll("a.example.test", 25565);
+        assertEquals(2, resolver.getHits());
+    }
+
+    @Test
+    void invalidHostnameIsAResolveFailure() {
+        char[] label = new char[64];
+        Arrays.fill(label, 'a');
+
+        MCPingSrvResolver resolver = MCPingSrvResolver.builder().build();
+        UncheckedIOException e = assertThrows(UncheckedIOException.class,
+                () -> resolver.resolveAll(new String(label) + ".example.test", 25565));
+
+        assertInstanceOf(MCPingException.class, e.getCause());
+        assertEquals(MCPingFailure.RESOLVE, ((MCPingException) e.getCause()).getFailure());
+    }
+
+    private static SRVRecord srv(final int priority, final int weight, final String target) {
+        return new SRVRecord(Name.root, DClass.IN, 0, priority, weight, 25566, Name.fromConstantString(target + "."));
+    }
+
+    /**
+     * Answers every SRV query on the loopback interface with the same records, NXDOMAIN if there
+     * are none.
+     */
+    private static final class FakeDnsServer extends Thread {
+
+        private final DatagramSocket socket;
+        private volatile long ttl;
+        private volatile SRVRecord[] records = new SRVRecord[0];
+
+        private FakeDnsServer() throws SocketException {
+            super("FakeDnsServer");
+            this.socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            this.setDaemon(true);
+        }
+
+        private void answer(final long ttl, final SRVRecord... records) {
+            this.ttl = ttl;
+            this.records = records;
+        }
+
+        @Override
+        public void run() {
+            byte[] buffer = new byte[512];
+
+            while (!this.socket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    this.socket.receive(packet);
+
+                    Message query = new Message(Arrays.copyOf(packet.getData(), packet.getLength()));
+                    Record question = query.getQuestion();
+
+                    Message response = new Message(query.getHeader().getID());
+                    response.getHeader().setFlag(Flags.QR);
+                    response.getHeader().setFlag(Flags.AA);
+                    response.addRecord(question, Section.QUESTION);
+
+                    if (this.records.length == 0) {
+                        response.getHeader().setRcode(Rcode.NXDOMAIN);
+                    }
+
+                    for (SRVRecord record : this.records) {
+                        response.addRecord(new SRVRecord(question.getName(), DClass.IN, this.ttl,
+                                record.getPriority(), record.getWeight(), record.getPort(), record.getTarget()),
+                                Section.ANSWER);
+                    }
+
+                    byte[] data = response.toWire();
+                    this.socket.send(new DatagramPacket(data, data.length, packet.getSocketAddress()));
+                } catch (IOException e) {
+                    // Closed by the test
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,103 @@
+package br.com.azalim.mcserverping;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.EnumSet;
+
+import org.junit.jupiter.api.Test;
+
+import br.com.azalim.mcserverping.examples.FakeStatusServer;
+
+class MCPingTest {
+
+    @Test
+    void pingsFakeServer() throws IOException {
+        try (FakeStatusServer server = FakeStatusServer.builder().online(12).max(100).faviconSize(1024).build()
+                .start()) {
+
+            MCPingResponse response = MCPing.getPing(options(server).build());
+
+            assertEquals(12, response.getPlayers().getOnline());
+            assertEquals(100, response.getPlayers().getMax());
+            assertNotNull(response.getFavicon());
+            assertEquals("127.0.0.1", response.getHostname());
+            assertEquals(server.getPort(), response.getPort());
+            assertTrue(response.getTimings().getPong() > 0);
+            assertEquals(1, server.getPongs());
+        }
+    }
+
+    @Test
+    void skipsFieldsThatWereNotSelected() throws IOException {
+        try (FakeStatusServer server = FakeStatusServer.builder().online(12).faviconSize(1024).build().start()) {
+
+            MCPingResponse response = MCPing.getPing(options(server)
+                    .fields(EnumSet.of(MCPingField.PLAYERS))
+                    .build());
+
+            assertEquals(12, response.getPlayers().getOnline());
+            assertNull(response.getFavicon());
+            assertNull(response.getDescription());
+        }
+    }
+
+    @Test
+    void rejectsResponsesLargerThanMaxResponseBytes() throws IOException {
+        try (FakeStatusServer server = FakeStatusServer.builder().payloadSize(64 * 1024).build().start()) {
+
+            MCPingException e = assertThrows(MCPingException.class,
+                    () -> MCPing.getPing(options(server).maxResponseBytes(16 * 1024).build()));
+
+            assertEquals(MCPingFailure.PROTOCOL, e.getFailure());
+
+            // The same response fits a larger limit
+            assertNotNull(MCPing.getPing(options(server).maxResponseBytes(128 * 1024).build()));
+        }
+    }
+
+    @Test
+    void rejectsHugeAnnouncedLength() throws IOException {
+        try (FakeStatusServer server = FakeStatusServer.builder()
+                .malformed(FakeStatusServer.Malformed.HUGE_LENGTH)
+                .build()
+                .start()) {
+
+            MCPingException e = assertThrows(MCPingException.class, () -> MCPing.getPing(options(server).build()));
+            assertEquals(MCPingFailure.PROTOCOL, e.getFailure());
+        }
+    }
+
+    @Test
+    void reportsMalformedJsonAsDecodeFailure() throws IOException {
+        try (FakeStatusServer server = FakeStatusServer.builder()
+                .malformed(FakeStatusServer.Malformed.BAD_JSON)
+                .build()
+                .start()) {
+
+            MCPingException e = assertThrows(MCPingException.class, () -> MCPing.getPing(options(server).build()));
+            assertEquals(MCPingFailure.DECODE, e.getFailure());
+        }
+    }
+
+    @Test
+    void timesOutWhenTheServerStalls() throws IOException {
+        try (FakeStatusServer server = FakeStatusServer.builder()
+                .stall(FakeStatusServer.Stall.BEFORE_STATUS)
+                .build()
+                .start()) {
+
+            assertThrows(SocketTimeoutException.class, () -> MCPing.getPing(options(server).readTimeout(200).build()));
+        }
+    }
+
+    private static MCPingOptions.MCPingOptionsBuilder options(final FakeStatusServer server) {
+        return MCPingOptions.builder().hostname("127.0.0.1").port(server.getPort()).timeout(2000).readTimeout(2000);
+    }
+
+}